@@ -0,0 +1,30 @@
+package machinelearning.distributed;
+
+import java.nio.ByteBuffer;
+
+// length followed by the values
+public class DoubleArrayWireFormat implements WireCodec<double[]> {
+
+	@Override
+	public int encodedSize(double[] geno) {
+		return 4 + 8 * geno.length;
+	}
+
+	@Override
+	public void encode(double[] geno, ByteBuffer buffer) {
+		buffer.putInt(geno.length);
+		for (double d : geno) {
+			buffer.putDouble(d);
+		}
+	}
+
+	@Override
+	public double[] decode(ByteBuffer buffer) {
+		double[] geno = new double[buffer.getInt()];
+		for (int i = 0; i < geno.length; i++) {
+			geno[i] = buffer.getDouble();
+		}
+		return geno;
+	}
+
+}
@@ -0,0 +1,465 @@
+package machinelearning.distributed;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// hands genotypes out to FitnessWorkers over TCP and collects their fitnesses.
+// all socket work happens on one selector thread. every worker is kept up to twice as many tasks as it
+// evaluates at once, so the next task is already on the wire when one finishes. when the queue runs dry an
+// idle worker steals a copy of the oldest task still running on a slower worker and whichever result comes
+// back first is used. tasks that time out, fail or were on a worker that disconnected are sent again, a worker
+// keeps the slot of a timed out task until its late result or error comes. while no worker is connected, a queued
+// task fails with a TimeoutException once it and the time since the last worker left exceed the timeout.
+// submit() can be called at any time from any thread, so the next generation's first offspring can be
+// evaluated while the last genomes of the previous one are still running.
+//
+// NEAT: neat.setFitnessEvaluator(new DistributedFitnessEvaluator(coordinator))
+// GA: override GeneticTrainer.calculateFitness(List<G>, GAEnvironment) with coordinator.calculateFitness(as)
+public class FitnessCoordinator<G> implements Closeable {
+
+	private static final int PIPELINE_DEPTH = 2;
+
+	private final WireCodec<G> codec;
+
+	private final ServerSocketChannel server;
+	private final Selector selector;
+	private final Thread selectorThread;
+	private volatile boolean running;
+
+	private final ConcurrentLinkedDeque<Task> pending = new ConcurrentLinkedDeque<>();
+	// every task that was submitted and isn't done yet
+	private final Map<Long, Task> tasks = new ConcurrentHashMap<>();
+	private long nextTaskID = 0;
+
+	// only touched by the selector thread
+	private final List<Worker> workers = new ArrayList<>();
+	// last time a worker that said hello was connected, only touched by the selector thread
+	private long lastWorkerSeen;
+
+	private volatile long timeoutNanos = TimeUnit.SECONDS.toNanos(60);
+	private volatile long stealAfterNanos = TimeUnit.SECONDS.toNanos(1);
+	private volatile int maxRetries = 3;
+
+	private volatile long completed, retries, steals;
+
+	public FitnessCoordinator(WireCodec<G> codec, InetSocketAddress bindAddress) throws IOException {
+		this.codec = codec;
+		this.selector = Selector.open();
+		this.server = ServerSocketChannel.open();
+		this.server.bind(bindAddress);
+		this.server.configureBlocking(false);
+		this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+
+		this.running = true;
+		this.lastWorkerSeen = System.nanoTime();
+		this.selectorThread = new Thread(this::selectLoop, "fitness-coordinator");
+		this.selectorThread.setDaemon(true);
+		this.selectorThread.start();
+	}
+
+	// listens on an ephemeral port of the loopback interface, for workers on the same machine
+	public static <G> FitnessCoordinator<G> loopback(WireCodec<G> codec) throws IOException {
+		return new FitnessCoordinator<>(codec, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+	}
+
+	// the genotype is encoded right away, so it can be changed as soon as this returns
+	public CompletableFuture<Double> submit(G geno) {
+		long taskID;
+		synchronized (this) {
+			taskID = this.nextTaskID++;
+		}
+		ByteBuffer frame = Protocol.frame(Protocol.TASK, taskID, this.codec.encodedSize(geno));
+		this.codec.encode(geno, frame);
+		frame.flip();
+
+		Task task = new Task(taskID, frame);
+		task.queuedAt = System.nanoTime();
+		this.tasks.put(taskID, task);
+		this.pending.addLast(task);
+		this.selector.wakeup();
+		return task.result;
+	}
+
+	// blocks until every fitness is in, in the same order as genos
+	public List<Double> calculateFitness(List<G> genos) {
+		List<CompletableFuture<Double>> futures = new ArrayList<>(genos.size());
+		for (G geno : genos) {
+			futures.add(this.submit(geno));
+		}
+		List<Double> fitnesses = new ArrayList<>(genos.size());
+		try {
+			for (CompletableFuture<Double> future : futures) {
+				fitnesses.add(future.join());
+			}
+		} catch (CompletionException e) {
+			throw new RuntimeException("There was an error calculating the fitness of a genome", e.getCause());
+		}
+		return fitnesses;
+	}
+
+	private void selectLoop() {
+		try {
+			while (this.running) {
+				this.selector.select(50);
+				for (Iterator<SelectionKey> it = this.selector.selectedKeys().iterator(); it.hasNext();) {
+					SelectionKey key = it.next();
+					it.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						this.accept();
+						continue;
+					}
+					Worker worker = (Worker) key.attachment();
+					try {
+						if (key.isReadable()) {
+							this.read(worker);
+						}
+						if (key.isValid() && key.isWritable()) {
+							worker.flush();
+						}
+					} catch (IOException e) {
+						this.disconnect(worker);
+					}
+				}
+				long now = System.nanoTime();
+				this.checkTimeouts(now);
+				this.dispatch(now);
+			}
+		} catch (IOException e) {
+			this.failAll(e);
+		} finally {
+			for (Worker worker : new ArrayList<>(this.workers)) {
+				this.disconnect(worker);
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = this.server.accept();
+		if (channel == null) {
+			return;
+		}
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		Worker worker = new Worker(channel);
+		worker.key = channel.register(this.selector, SelectionKey.OP_READ, worker);
+		this.workers.add(worker);
+	}
+
+	private void read(Worker worker) throws IOException {
+		if (worker.channel.read(worker.in) < 0) {
+			throw new IOException("Worker disconnected");
+		}
+		worker.in.flip();
+		while (worker.in.remaining() >= 4) {
+			int length = worker.in.getInt(worker.in.position());
+			if (length < 9 || length > Protocol.MAX_FRAME_SIZE) {
+				throw new IOException("Bad frame length " + length);
+			}
+			if (worker.in.remaining() < 4 + length) {
+				if (worker.in.capacity() < 4 + length) {
+					ByteBuffer bigger = ByteBuffer.allocate(4 + length);
+					bigger.put(worker.in);
+					worker.in = bigger;
+					return;
+				}
+				break;
+			}
+			worker.in.getInt();
+			byte type = worker.in.get();
+			long taskID = worker.in.getLong();
+			int payloadSize = length - 9;
+			switch (type) {
+			case Protocol.HELLO:
+				worker.capacity = Math.max(1, worker.in.getInt()) * FitnessCoordinator.PIPELINE_DEPTH;
+				break;
+			case Protocol.RESULT:
+				this.complete(worker, taskID, worker.in.getDouble());
+				break;
+			case Protocol.ERROR:
+				String message = Protocol.readError(worker.in, payloadSize);
+				this.retry(worker, taskID, true, new RuntimeException("Worker failed: " + message));
+				break;
+			default:
+				throw new IOException("Unknown frame type " + type);
+			}
+		}
+		worker.in.compact();
+	}
+
+	private void complete(Worker worker, long taskID, double fitness) {
+		worker.inFlight.remove(taskID);
+		worker.late.remove(taskID);
+		Task task = this.tasks.remove(taskID);
+		if (task == null) {
+			// the copy on another worker was faster
+			return;
+		}
+		for (Worker holder : task.holders) {
+			holder.inFlight.remove(taskID);
+		}
+		task.holders.clear();
+		this.completed++;
+		task.result.complete(fitness);
+	}
+
+	// takes the task away from worker and sends it again if no other worker has it
+	private void retry(Worker worker, long taskID, boolean countsAsAttempt, Throwable cause) {
+		if (worker.late.remove(taskID)) {
+			// the timeout already took the task away and counted the attempt
+			return;
+		}
+		worker.inFlight.remove(taskID);
+		Task task = this.tasks.get(taskID);
+		if (task == null) {
+			return;
+		}
+		task.holders.remove(worker);
+		if (countsAsAttempt) {
+			task.attempts++;
+		}
+		if (!task.holders.isEmpty()) {
+			return;
+		}
+		if (task.attempts > this.maxRetries) {
+			this.tasks.remove(taskID);
+			task.result.completeExceptionally(cause);
+		} else {
+			this.retries++;
+			task.queuedAt = System.nanoTime();
+			this.pending.addFirst(task);
+		}
+	}
+
+	private void checkTimeouts(long now) {
+		for (Worker worker : this.workers) {
+			// oldest first
+			for (Iterator<Map.Entry<Long, Long>> it = worker.inFlight.entrySet().iterator(); it.hasNext();) {
+				Map.Entry<Long, Long> entry = it.next();
+				if (now - entry.getValue() < this.timeoutNanos) {
+					break;
+				}
+				it.remove();
+				this.retry(worker, entry.getKey(), true, new TimeoutException("Timed out on every attempt"));
+				// the worker is still busy with it
+				worker.late.add(entry.getKey());
+			}
+		}
+
+		for (Worker worker : this.workers) {
+			if (worker.capacity > 0) {
+				this.lastWorkerSeen = now;
+				return;
+			}
+		}
+		if (now - this.lastWorkerSeen < this.timeoutNanos) {
+			return;
+		}
+		for (Iterator<Task> it = this.pending.iterator(); it.hasNext();) {
+			Task task = it.next();
+			if (task.result.isDone()) {
+				it.remove();
+			} else if (now - task.queuedAt >= this.timeoutNanos) {
+				it.remove();
+				this.tasks.remove(task.ID);
+				task.result.completeExceptionally(new TimeoutException("No worker connected to evaluate the task"));
+			}
+		}
+	}
+
+	private void dispatch(long now) {
+		for (Worker worker : new ArrayList<>(this.workers)) {
+			while (worker.capacity > 0 && worker.inFlight.size() + worker.late.size() < worker.capacity) {
+				Task task = this.pending.pollFirst();
+				if (task == null) {
+					task = this.findTaskToSteal(worker, now);
+					if (task == null) {
+						break;
+					}
+					this.steals++;
+				} else if (task.result.isDone()) {
+					continue;
+				}
+				if (!this.send(worker, task, now)) {
+					break;
+				}
+			}
+		}
+	}
+
+	// the oldest task that has been running on only one other worker for longer than stealAfterNanos
+	private Task findTaskToSteal(Worker thief, long now) {
+		Task oldest = null;
+		long oldestSent = now - this.stealAfterNanos;
+		for (Worker worker : this.workers) {
+			if (worker == thief) {
+				continue;
+			}
+			for (Map.Entry<Long, Long> entry : worker.inFlight.entrySet()) {
+				if (entry.getValue() > oldestSent) {
+					break;
+				}
+				Task task = this.tasks.get(entry.getKey());
+				if (task != null && task.holders.size() == 1) {
+					oldest = task;
+					oldestSent = entry.getValue();
+					break;
+				}
+			}
+		}
+		return oldest;
+	}
+
+	private boolean send(Worker worker, Task task, long now) {
+		worker.inFlight.put(task.ID, now);
+		task.holders.add(worker);
+		worker.out.add(task.frame.duplicate());
+		try {
+			worker.flush();
+			return true;
+		} catch (IOException e) {
+			this.disconnect(worker);
+			return false;
+		}
+	}
+
+	private void disconnect(Worker worker) {
+		if (!this.workers.remove(worker)) {
+			return;
+		}
+		worker.key.cancel();
+		try {
+			worker.channel.close();
+		} catch (IOException e) {
+			// closing anyway
+		}
+		for (Long taskID : new ArrayList<>(worker.inFlight.keySet())) {
+			this.retry(worker, taskID, false, null);
+		}
+	}
+
+	private void failAll(Throwable cause) {
+		for (Task task : this.tasks.values()) {
+			task.result.completeExceptionally(cause);
+		}
+		this.tasks.clear();
+		this.pending.clear();
+	}
+
+	public int getPort() {
+		return this.server.socket().getLocalPort();
+	}
+
+	public InetSocketAddress getAddress() {
+		return new InetSocketAddress(this.server.socket().getInetAddress(), this.getPort());
+	}
+
+	public void setTimeout(long timeout, TimeUnit unit) {
+		this.timeoutNanos = unit.toNanos(timeout);
+	}
+
+	public void setStealAfter(long stealAfter, TimeUnit unit) {
+		this.stealAfterNanos = unit.toNanos(stealAfter);
+	}
+
+	public void setMaxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+	}
+
+	public long getCompleted() {
+		return this.completed;
+	}
+
+	public long getRetries() {
+		return this.retries;
+	}
+
+	public long getSteals() {
+		return this.steals;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.running = false;
+		this.selector.wakeup();
+		try {
+			this.selectorThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.failAll(new IOException("Coordinator closed"));
+		this.server.close();
+		this.selector.close();
+	}
+
+	private static class Task {
+		final long ID;
+		// the whole TASK frame, kept for retries and steals
+		final ByteBuffer frame;
+		final CompletableFuture<Double> result = new CompletableFuture<>();
+		// workers the task is currently sent to, only touched by the selector thread
+		final List<Worker> holders = new ArrayList<>(2);
+		int attempts = 0;
+		// when the task was put into pending the last time
+		volatile long queuedAt;
+
+		Task(long ID, ByteBuffer frame) {
+			this.ID = ID;
+			this.frame = frame;
+		}
+	}
+
+	private static class Worker {
+		final SocketChannel channel;
+		SelectionKey key;
+		ByteBuffer in = ByteBuffer.allocate(1 << 12);
+		final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+		// tasks sent to this worker in the order they were sent, mapped to when they were sent
+		final LinkedHashMap<Long, Long> inFlight = new LinkedHashMap<>();
+		// timed out tasks the worker is still running, they keep their slot until the result or error comes
+		final Set<Long> late = new HashSet<>();
+		// 0 until the worker said hello
+		int capacity = 0;
+
+		Worker(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		void flush() throws IOException {
+			while (!this.out.isEmpty()) {
+				ByteBuffer buffer = this.out.peek();
+				this.channel.write(buffer);
+				if (buffer.hasRemaining()) {
+					this.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+					return;
+				}
+				this.out.poll();
+			}
+			this.key.interestOps(SelectionKey.OP_READ);
+		}
+	}
+
+}
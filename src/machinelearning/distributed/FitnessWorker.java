@@ -0,0 +1,138 @@
+package machinelearning.distributed;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.ToDoubleFunction;
+
+// connects to a FitnessCoordinator and evaluates the genotypes it sends on numThreads threads.
+// on a remote machine: new FitnessWorker<>(coordinatorAddress, codec, fitnessFunction, numThreads).run()
+public class FitnessWorker<G> implements Runnable, Closeable {
+
+	private final InetSocketAddress coordinatorAddress;
+	private final WireCodec<G> codec;
+	private final ToDoubleFunction<G> fitnessFunction;
+	private final int numThreads;
+
+	private volatile SocketChannel channel;
+	private volatile ExecutorService executor;
+	private volatile boolean running;
+
+	private final Object writeLock = new Object();
+
+	public FitnessWorker(InetSocketAddress coordinatorAddress, WireCodec<G> codec, ToDoubleFunction<G> fitnessFunction,
+			int numThreads) {
+		this.coordinatorAddress = coordinatorAddress;
+		this.codec = codec;
+		this.fitnessFunction = fitnessFunction;
+		this.numThreads = numThreads;
+	}
+
+	// a worker on a daemon thread of this JVM that talks to the coordinator through the loopback interface
+	public static <G> FitnessWorker<G> startLoopback(FitnessCoordinator<G> coordinator, WireCodec<G> codec,
+			ToDoubleFunction<G> fitnessFunction, int numThreads) {
+		FitnessWorker<G> worker = new FitnessWorker<>(
+				new InetSocketAddress(InetAddress.getLoopbackAddress(), coordinator.getPort()), codec, fitnessFunction,
+				numThreads);
+		Thread thread = new Thread(worker, "fitness-worker");
+		thread.setDaemon(true);
+		thread.start();
+		return worker;
+	}
+
+	// reads tasks until the coordinator closes the connection or close() is called
+	@Override
+	public void run() {
+		this.running = true;
+		this.executor = Executors.newFixedThreadPool(this.numThreads, runnable -> {
+			Thread thread = new Thread(runnable, "fitness-worker-eval");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try (SocketChannel channel = SocketChannel.open(this.coordinatorAddress)) {
+			this.channel = channel;
+			channel.socket().setTcpNoDelay(true);
+			this.write(Protocol.hello(this.numThreads));
+
+			ByteBuffer header = ByteBuffer.allocate(4);
+			while (this.running) {
+				header.clear();
+				this.readFully(header);
+				int length = header.getInt(0);
+				if (length < 9 || length > Protocol.MAX_FRAME_SIZE) {
+					throw new IOException("Bad frame length " + length);
+				}
+				ByteBuffer body = ByteBuffer.allocate(length);
+				this.readFully(body);
+				body.flip();
+
+				byte type = body.get();
+				long taskID = body.getLong();
+				if (type != Protocol.TASK) {
+					throw new IOException("Unknown frame type " + type);
+				}
+				this.executor.execute(() -> this.evaluate(taskID, body));
+			}
+		} catch (EOFException e) {
+			// the coordinator was closed
+		} catch (IOException e) {
+			if (this.running) {
+				throw new RuntimeException("Lost the connection to the coordinator", e);
+			}
+		} finally {
+			this.running = false;
+			this.executor.shutdownNow();
+		}
+	}
+
+	private void evaluate(long taskID, ByteBuffer payload) {
+		ByteBuffer reply;
+		try {
+			double fitness = this.fitnessFunction.applyAsDouble(this.codec.decode(payload));
+			reply = Protocol.result(taskID, fitness);
+		} catch (RuntimeException e) {
+			reply = Protocol.error(taskID, e.toString());
+		}
+		try {
+			this.write(reply);
+		} catch (IOException e) {
+			// the reader thread notices the broken connection
+		}
+	}
+
+	private void write(ByteBuffer buffer) throws IOException {
+		synchronized (this.writeLock) {
+			while (buffer.hasRemaining()) {
+				this.channel.write(buffer);
+			}
+		}
+	}
+
+	private void readFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (this.channel.read(buffer) < 0) {
+				throw new EOFException();
+			}
+		}
+	}
+
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.running = false;
+		SocketChannel channel = this.channel;
+		if (channel != null) {
+			channel.close();
+		}
+	}
+
+}
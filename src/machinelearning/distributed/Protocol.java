@@ -0,0 +1,62 @@
+package machinelearning.distributed;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// every frame is [int length of the rest][byte type][long taskID][payload]
+final class Protocol {
+
+	// worker -> coordinator when it connects, payload is the int number of tasks it evaluates at once
+	static final byte HELLO = 0;
+	// coordinator -> worker, payload is the encoded genotype
+	static final byte TASK = 1;
+	// worker -> coordinator, payload is the double fitness
+	static final byte RESULT = 2;
+	// worker -> coordinator, payload is the error message
+	static final byte ERROR = 3;
+
+	static final int HEADER_SIZE = 4 + 1 + 8;
+
+	// frames larger than this are treated as a broken connection
+	static final int MAX_FRAME_SIZE = 64 << 20;
+
+	private Protocol() {
+	}
+
+	static ByteBuffer frame(byte type, long taskID, int payloadSize) {
+		ByteBuffer buffer = ByteBuffer.allocate(Protocol.HEADER_SIZE + payloadSize);
+		buffer.putInt(1 + 8 + payloadSize);
+		buffer.put(type);
+		buffer.putLong(taskID);
+		return buffer;
+	}
+
+	static ByteBuffer hello(int capacity) {
+		ByteBuffer buffer = Protocol.frame(Protocol.HELLO, 0, 4);
+		buffer.putInt(capacity);
+		buffer.flip();
+		return buffer;
+	}
+
+	static ByteBuffer result(long taskID, double fitness) {
+		ByteBuffer buffer = Protocol.frame(Protocol.RESULT, taskID, 8);
+		buffer.putDouble(fitness);
+		buffer.flip();
+		return buffer;
+	}
+
+	static ByteBuffer error(long taskID, String message) {
+		byte[] bytes = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = Protocol.frame(Protocol.ERROR, taskID, bytes.length);
+		buffer.put(bytes);
+		buffer.flip();
+		return buffer;
+	}
+
+	static String readError(ByteBuffer buffer, int payloadSize) {
+		byte[] bytes = new byte[payloadSize];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
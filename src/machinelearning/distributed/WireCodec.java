@@ -0,0 +1,14 @@
+package machinelearning.distributed;
+
+import java.nio.ByteBuffer;
+
+// turns a genotype into bytes for a FitnessWorker and back
+public interface WireCodec<G> {
+
+	public abstract int encodedSize(G geno);
+
+	public abstract void encode(G geno, ByteBuffer buffer);
+
+	public abstract G decode(ByteBuffer buffer);
+
+}
@@ -0,0 +1,87 @@
+package machinelearning.geneticalgorithm;
+
+import math.AKRandom;
+
+// Walker's alias method (Vose's construction): O(n) to build, O(1) per draw.
+// worth it over FitnessSampler when many draws are made from the same weights.
+public class AliasSampler {
+
+	private final double[] probability;
+	private final int[] alias;
+
+	public AliasSampler(double[] weights) {
+		this(weights, weights.length);
+	}
+
+	// weights must not be negative and must not all be 0
+	public AliasSampler(double[] weights, int size) {
+		this.probability = new double[size];
+		this.alias = new int[size];
+
+		double total = 0;
+		for (int i = 0; i < size; i++) {
+			if (!(weights[i] >= 0)) {
+				throw new IllegalArgumentException("Weight " + i + " is negative or NaN: " + weights[i]);
+			}
+			total += weights[i];
+		}
+		if (!(total > 0)) {
+			throw new IllegalArgumentException("Weights sum to " + total);
+		}
+
+		// scaled so the average weight is 1, small ones (< 1) get topped up by large ones
+		double[] scaled = new double[size];
+		int[] small = new int[size];
+		int[] large = new int[size];
+		int numSmall = 0, numLarge = 0;
+		for (int i = 0; i < size; i++) {
+			scaled[i] = weights[i] * size / total;
+			if (scaled[i] < 1) {
+				small[numSmall++] = i;
+			} else {
+				large[numLarge++] = i;
+			}
+		}
+		while (numSmall > 0 && numLarge > 0) {
+			int s = small[--numSmall];
+			int l = large[--numLarge];
+			this.probability[s] = scaled[s];
+			this.alias[s] = l;
+			scaled[l] = scaled[l] + scaled[s] - 1;
+			if (scaled[l] < 1) {
+				small[numSmall++] = l;
+			} else {
+				large[numLarge++] = l;
+			}
+		}
+		// whatever is left is 1 up to rounding errors
+		while (numLarge > 0) {
+			int l = large[--numLarge];
+			this.probability[l] = 1;
+			this.alias[l] = l;
+		}
+		while (numSmall > 0) {
+			int s = small[--numSmall];
+			this.probability[s] = 1;
+			this.alias[s] = s;
+		}
+	}
+
+	public int sample(double column01, double coin01) {
+		int column = Math.min((int) (column01 * this.probability.length), this.probability.length - 1);
+		return coin01 < this.probability[column] ? column : this.alias[column];
+	}
+
+	public int sample() {
+		return this.sample(AKRandom.randomNumber(0, 1), AKRandom.randomNumber(0, 1));
+	}
+
+	public int sample(AKRandom random) {
+		return this.sample(random.nextRandomNumber(1), random.nextRandomNumber(1));
+	}
+
+	public int size() {
+		return this.probability.length;
+	}
+
+}
@@ -0,0 +1,125 @@
+package machinelearning.geneticalgorithm;
+
+import math.AKRandom;
+
+// fitness proportionate sampling over a cumulative sum of the weights, built once per generation.
+// a single draw is a binary search, universalSample is stochastic universal sampling with one spin.
+public class FitnessSampler {
+
+	private final double[] cumulative;
+
+	private final double total;
+
+	public FitnessSampler(double[] weights) {
+		this(weights, weights.length);
+	}
+
+	// weights must not be negative
+	public FitnessSampler(double[] weights, int size) {
+		this(weights, size, false);
+	}
+
+	private FitnessSampler(double[] weights, int size, boolean allowNegative) {
+		this.cumulative = new double[size];
+		double sum = 0, max = 0;
+		for (int i = 0; i < size; i++) {
+			if (allowNegative ? Double.isNaN(weights[i]) : !(weights[i] >= 0)) {
+				throw new IllegalArgumentException("Weight " + i + " is negative or NaN: " + weights[i]);
+			}
+			sum += weights[i];
+			// the running maximum keeps the sums searchable and still finds the first element whose running sum
+			// reaches a point
+			max = i == 0 ? sum : Math.max(max, sum);
+			this.cumulative[i] = max;
+		}
+		this.total = sum;
+	}
+
+	// accepts negative weights like the roulette wheel NEAT used before: the point is spun over the total and the
+	// first element whose running sum passes it is picked, so only the total has to stay positive
+	public static FitnessSampler allowingNegative(double[] weights) {
+		return new FitnessSampler(weights, weights.length, true);
+	}
+
+	// shifts the fitnesses so that the least fit one still gets a small chance (0.1), like the sampling in
+	// GeneticTrainer always did. members with a NaN fitness are never picked
+	public static FitnessSampler shifted(double[] fitness, int size) {
+		double fitnessOffset = Double.MAX_VALUE;
+		for (int i = 0; i < size; i++) {
+			if (fitness[i] < fitnessOffset) {
+				fitnessOffset = fitness[i];
+			}
+		}
+		if (fitnessOffset < 0) {
+			fitnessOffset *= -1;
+		} else {
+			fitnessOffset = 0;
+		}
+		fitnessOffset += 0.1;
+
+		double[] weights = new double[size];
+		for (int i = 0; i < size; i++) {
+			weights[i] = Double.isNaN(fitness[i]) ? 0 : fitness[i] + fitnessOffset;
+		}
+		return new FitnessSampler(weights, size);
+	}
+
+	// index of the first element whose cumulative weight is greater than point
+	public int indexOf(double point) {
+		int low = 0, high = this.cumulative.length - 1;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (this.cumulative[mid] > point) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	public int sample() {
+		return this.indexOf(AKRandom.randomNumber(0, this.total));
+	}
+
+	public int sample(AKRandom random) {
+		return this.indexOf(random.nextRandomNumber(this.total));
+	}
+
+	// n evenly spaced pointers from a single random start, in one pass over the cumulative sums.
+	// the indices come out sorted, pointers i and i + n/2 are half the total weight apart
+	public int[] universalSample(int n, double start01) {
+		int[] indices = new int[n];
+		if (n == 0) {
+			return indices;
+		}
+		double step = this.total / n;
+		double pointer = start01 * step;
+		int index = 0;
+		int last = this.cumulative.length - 1;
+		for (int i = 0; i < n; i++, pointer += step) {
+			while (index < last && this.cumulative[index] <= pointer) {
+				index++;
+			}
+			indices[i] = index;
+		}
+		return indices;
+	}
+
+	public int[] universalSample(int n) {
+		return this.universalSample(n, AKRandom.randomNumber(0, 1));
+	}
+
+	public int[] universalSample(int n, AKRandom random) {
+		return this.universalSample(n, random.nextRandomNumber(1));
+	}
+
+	public double getTotal() {
+		return this.total;
+	}
+
+	public int size() {
+		return this.cumulative.length;
+	}
+
+}
@@ -1,9 +1,11 @@
 package machinelearning.geneticalgorithm;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import data.tuple.Tuple2D;
 import math.AKRandom;
@@ -15,7 +17,11 @@ public class GAEnvironment<G> {
 
 	private List<G> population;
 
-	private HashMap<G, Double> fitnesses;
+	// fitness[i] is the fitness of population.get(i), NaN for members that were not evaluated yet
+	private double[] fitness;
+
+	// map view of fitness, only built when getFitnesses() is called and dropped whenever fitness changes
+	private HashMap<G, Double> fitnessesView;
 
 	private int preferredPopulationSize;
 
@@ -27,7 +33,7 @@ public class GAEnvironment<G> {
 		this.setTrainer(trainer);
 
 		this.population = new ArrayList<>(this.preferredPopulationSize);
-		this.fitnesses = new HashMap<>();
+		this.fitness = new double[0];
 
 		this.populateRest();
 
@@ -46,14 +52,51 @@ public class GAEnvironment<G> {
 		return this.population;
 	}
 
+	public double getFitness(int populationIndex) {
+		return this.fitness[populationIndex];
+	}
+
+	// aligned with getPopulation(), may be longer than the population
+	public double[] getFitnessArray() {
+		return this.fitness;
+	}
+
+	// read only snapshot of the fitnesses for code that looks them up by genotype, rebuilt after every change
 	public HashMap<G, Double> getFitnesses() {
-		return this.fitnesses;
+		if (this.fitnessesView == null) {
+			this.fitnessesView = new HashMap<>(this.population.size() * 2);
+			for (int i = 0; i < this.population.size(); i++) {
+				if (!Double.isNaN(this.fitness[i])) {
+					this.fitnessesView.put(this.population.get(i), this.fitness[i]);
+				}
+			}
+		}
+		return this.fitnessesView;
+	}
+
+	// puts geno in place of the member at populationIndex, it has no fitness until the next calculateFitnesses
+	public void replace(int populationIndex, G geno) {
+		this.population.set(populationIndex, geno);
+		this.fitness[populationIndex] = Double.NaN;
+		this.fitnessesView = null;
 	}
 
 	private void populateRest() {
 		for (int i = this.population.size(); i < this.preferredPopulationSize; i++) {
 			this.population.add(this.trainer.generateRandom(this));
 		}
+		this.alignFitness();
+	}
+
+	// grows the fitness array to the population size, new members have no fitness yet
+	private void alignFitness() {
+		int size = this.population.size();
+		if (this.fitness.length < size) {
+			int oldLength = this.fitness.length;
+			this.fitness = Arrays.copyOf(this.fitness, Math.max(size, oldLength * 3 / 2));
+			Arrays.fill(this.fitness, oldLength, this.fitness.length, Double.NaN);
+		}
+		this.fitnessesView = null;
 	}
 
 	public void runGeneration() {
@@ -64,34 +107,41 @@ public class GAEnvironment<G> {
 
 		this.selectSurvivors();
 
-		this.cleanupFitness();
-
 		List<G> offspring = this.crossPopulation();// new members added
 
 		this.mutatePopulation();
 
 		this.population.addAll(offspring);
+		this.alignFitness();
 
 		this.currentGeneration++;
 	}
 
-	private void cleanupFitness() {
-		this.fitnesses.entrySet().removeIf(e -> !GAEnvironment.this.population.contains(e.getKey()));
-	}
-
 	public void calculateFitnesses() {
 		List<Double> fits = this.trainer.calculateFitness(this.population, this);
 
+		this.alignFitness();
 		for (int i = 0; i < this.population.size(); i++) {
-			this.fitnesses.put(this.population.get(i), fits.get(i));
+			this.fitness[i] = fits.get(i);
 		}
 	}
 
+	// most fit first, sorts the population list in place
 	public void sortPopulation() {
-		Collections.sort(this.population, (o1, o2) -> {
-			double dec = GAEnvironment.this.fitnesses.get(o2) - GAEnvironment.this.fitnesses.get(o1);
-			return dec == 0 ? 0 : dec > 0 ? 1 : -1;
-		});
+		int size = this.population.size();
+		int[] order = IndexSort.sort(this.fitness, size, true);
+
+		Object[] members = this.population.toArray();
+		double[] sortedFitness = new double[this.fitness.length];
+		Arrays.fill(sortedFitness, size, sortedFitness.length, Double.NaN);
+		for (int i = 0; i < size; i++) {
+			@SuppressWarnings("unchecked")
+			G geno = (G) members[order[i]];
+			this.population.set(i, geno);
+			sortedFitness[i] = this.fitness[order[i]];
+		}
+		this.fitness = sortedFitness;
+		this.fitnessesView = null;
 	}
 
 	private List<G> crossPopulation() {
@@ -115,10 +165,11 @@ public class GAEnvironment<G> {
 
 			if (AKRandom.randomChance(this.trainer.getMutationChance(geno, this))) {
 				G newgeno = this.trainer.mutate(geno, this);
-				this.population.remove(i);
-				this.population.add(i, newgeno);
+				this.population.set(i, newgeno);
+				this.fitness[i] = Double.NaN;
 			}
 		}
+		this.fitnessesView = null;
 		// System.out.println("Mutated " + toAdd.size() + " members");
 
 	}
@@ -126,9 +177,30 @@ public class GAEnvironment<G> {
 	private void selectSurvivors() {
 		int numShouldBeKilled = this.population.size() - this.preferredPopulationSize;
 		List<G> killed = this.trainer.killOff(this.population, numShouldBeKilled, this);
+
+		// remove them all in one pass instead of a population.remove per victim, the fitnesses move along
+		Map<G, Integer> numToRemove = new IdentityHashMap<>(killed.size() * 2);
 		for (G geno : killed) {
-			this.population.remove(geno);
+			numToRemove.merge(geno, 1, Integer::sum);
+		}
+		int size = 0;
+		for (int i = 0; i < this.population.size(); i++) {
+			G geno = this.population.get(i);
+			Integer count = numToRemove.get(geno);
+			if (count != null) {
+				if (count == 1) {
+					numToRemove.remove(geno);
+				} else {
+					numToRemove.put(geno, count - 1);
+				}
+			} else {
+				this.fitness[size] = this.fitness[i];
+				this.population.set(size++, geno);
+			}
 		}
+		this.population.subList(size, this.population.size()).clear();
+		Arrays.fill(this.fitness, size, this.fitness.length, Double.NaN);
+		this.fitnessesView = null;
 	}
 
 }
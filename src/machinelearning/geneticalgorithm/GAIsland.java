@@ -0,0 +1,65 @@
+package machinelearning.geneticalgorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+public class GAIsland<G> implements Island<G> {
+
+	private final GAEnvironment<G> env;
+
+	// deep copies a genotype before it leaves the island
+	private final UnaryOperator<G> copier;
+
+	public GAIsland(GAEnvironment<G> env, UnaryOperator<G> copier) {
+		this.env = env;
+		this.copier = copier;
+	}
+
+	@Override
+	public void runGeneration() {
+		this.env.runGeneration();
+	}
+
+	@Override
+	public List<G> emigrants(int count) {
+		List<G> population = this.env.getPopulation();
+		double[] fitness = this.rankableFitness(Double.NEGATIVE_INFINITY);
+		int[] best = IndexSort.descending(fitness);
+
+		List<G> emigrants = new ArrayList<>(count);
+		for (int i = 0; i < count && i < best.length; i++) {
+			if (fitness[best[i]] == Double.NEGATIVE_INFINITY) {
+				break;
+			}
+			emigrants.add(this.copier.apply(population.get(best[i])));
+		}
+		return emigrants;
+	}
+
+	@Override
+	public void immigrate(List<G> immigrants) {
+		// members that were not evaluated yet are left alone
+		int[] worst = IndexSort.ascending(this.rankableFitness(Double.POSITIVE_INFINITY));
+		for (int i = 0; i < immigrants.size() && i < worst.length; i++) {
+			this.env.replace(worst[i], immigrants.get(i));
+		}
+	}
+
+	// the fitnesses of the population with noFitness for members without one
+	private double[] rankableFitness(double noFitness) {
+		double[] fitness = new double[this.env.getPopulation().size()];
+		for (int i = 0; i < fitness.length; i++) {
+			fitness[i] = this.env.getFitness(i);
+			if (Double.isNaN(fitness[i])) {
+				fitness[i] = noFitness;
+			}
+		}
+		return fitness;
+	}
+
+	public GAEnvironment<G> getEnvironment() {
+		return this.env;
+	}
+
+}
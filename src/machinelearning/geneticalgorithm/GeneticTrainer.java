@@ -1,6 +1,7 @@
 package machinelearning.geneticalgorithm;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import data.tuple.Tuple2D;
@@ -35,59 +36,16 @@ public interface GeneticTrainer<G> {
 
 	public abstract List<G> killOff(List<G> population, int numToKill, GAEnvironment<G> env);
 
-	// stochastic universal sampling
+	// stochastic universal sampling: one spin with 2 * numCrossovers evenly spaced pointers. partners are the
+	// pointers half of the total fitness apart, so a pair is not made of neighbours.
 	public default List<Tuple2D<G, G>> selectCrossoverPartnersSUS(List<G> population, int numCrossovers,
 			GAEnvironment<G> env) {
-
-		double fitnessOffset = Double.MAX_VALUE;
-		for (G c : population) {
-
-			double fit = env.getFitnesses().get(c);
-			if (fit < fitnessOffset) {
-				fitnessOffset = fit;
-			}
-		}
-		if (fitnessOffset < 0) {
-			fitnessOffset *= -1;
-		} else {
-			fitnessOffset = 0;
-		}
-		fitnessOffset += 0.1;
-
-		// calculate total fitness
-		double totalFitness = 0;
-		for (G c : population) {
-			totalFitness += env.getFitnesses().get(c) + fitnessOffset;
-		}
+		FitnessSampler sampler = FitnessSampler.shifted(this.fitnessArray(population, env), population.size());
+		int[] picks = sampler.universalSample(2 * numCrossovers);
 
 		List<Tuple2D<G, G>> partners = new ArrayList<>(numCrossovers);
-
-		// System.out.println(fitnessOffset);
-
 		for (int i = 0; i < numCrossovers; i++) {
-			double pick1Fit = AKRandom.randomNumber(0, totalFitness);
-			double pick2Fit = (pick1Fit + totalFitness / 2) % totalFitness;
-
-			G a = null, b = null;
-			double currentFitAt = 0;
-			for (G c : population) {
-				double fit = env.getFitnesses().get(c) + fitnessOffset;
-				currentFitAt += fit;
-
-				if (currentFitAt > pick1Fit && a == null) {
-					a = c;
-				}
-				if (currentFitAt > pick2Fit && b == null) {
-					b = c;
-				}
-				if (a != null && b != null) {
-					break;
-				}
-			}
-			if (a == null || b == null) {
-				System.out.println("rip");
-			}
-			partners.add(new Tuple2D<>(a, b));
+			partners.add(new Tuple2D<>(population.get(picks[i]), population.get(picks[i + numCrossovers])));
 		}
 		return partners;
 
@@ -108,27 +66,47 @@ public interface GeneticTrainer<G> {
 	}
 
 	public default List<G> killOffWorst(List<G> population, int numToKill, GAEnvironment<G> env) {
-		List<G> killed = new ArrayList<>(numToKill);
-
-		for (int i = 0; i < numToKill; i++) {
-			G leastFitC = null;
-			double leastfitness = Double.MAX_VALUE;
-			for (G c : population) {
-				if (!killed.contains(c)) {
-					if (env.getFitnesses().containsKey(c)) {
-						double fitness = env.getFitnesses().get(c);
-						if (fitness < leastfitness) {
-							leastfitness = fitness;
-							leastFitC = c;
-						}
-					}
-				}
-			}
-			killed.add(leastFitC);
+		int[] killed = SurvivorSelection.truncation(this.killableFitnessArray(population, env), numToKill);
+		return this.atIndices(population, killed);
+	}
+
+	public default List<G> killOffTournament(List<G> population, int numToKill, int tournamentSize,
+			GAEnvironment<G> env) {
+		int[] killed = SurvivorSelection.tournament(this.killableFitnessArray(population, env), numToKill,
+				tournamentSize);
+		return this.atIndices(population, killed);
+	}
+
+	// fitness of every member by population index, NaN for members without a fitness
+	public default double[] fitnessArray(List<G> population, GAEnvironment<G> env) {
+		if (population == env.getPopulation()) {
+			return Arrays.copyOf(env.getFitnessArray(), population.size());
 		}
+		double[] fitness = new double[population.size()];
+		for (int i = 0; i < fitness.length; i++) {
+			Double fit = env.getFitnesses().get(population.get(i));
+			fitness[i] = fit == null ? Double.NaN : fit;
+		}
+		return fitness;
+	}
 
-		return killed;
+	// members without a fitness are never killed
+	public default double[] killableFitnessArray(List<G> population, GAEnvironment<G> env) {
+		double[] fitness = this.fitnessArray(population, env);
+		for (int i = 0; i < fitness.length; i++) {
+			if (Double.isNaN(fitness[i])) {
+				fitness[i] = Double.POSITIVE_INFINITY;
+			}
+		}
+		return fitness;
+	}
 
+	public default List<G> atIndices(List<G> population, int[] indices) {
+		List<G> members = new ArrayList<>(indices.length);
+		for (int index : indices) {
+			members.add(population.get(index));
+		}
+		return members;
 	}
 
 }
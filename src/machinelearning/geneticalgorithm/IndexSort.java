@@ -0,0 +1,83 @@
+package machinelearning.geneticalgorithm;
+
+// stable sorts of population indices by a primitive fitness array, no boxing and no comparator calls
+public final class IndexSort {
+
+	private IndexSort() {
+	}
+
+	// indices of keys from the smallest to the largest key, equal keys keep their index order
+	public static int[] ascending(double[] keys) {
+		return IndexSort.sort(keys, keys.length, false);
+	}
+
+	// indices of keys from the largest to the smallest key, equal keys keep their index order
+	public static int[] descending(double[] keys) {
+		return IndexSort.sort(keys, keys.length, true);
+	}
+
+	public static int[] sort(double[] keys, int length, boolean descending) {
+		int[] indices = new int[length];
+		for (int i = 0; i < length; i++) {
+			indices[i] = i;
+		}
+		IndexSort.sort(indices, keys, descending);
+		return indices;
+	}
+
+	// bottom up merge sort of indices by keys[index]
+	public static void sort(int[] indices, double[] keys, boolean descending) {
+		int n = indices.length;
+		int[] src = indices;
+		int[] dst = new int[n];
+
+		// insertion sort small runs first
+		final int run = 32;
+		for (int start = 0; start < n; start += run) {
+			int end = Math.min(start + run, n);
+			for (int i = start + 1; i < end; i++) {
+				int index = src[i];
+				double key = keys[index];
+				int j = i - 1;
+				while (j >= start && IndexSort.before(key, keys[src[j]], descending)) {
+					src[j + 1] = src[j];
+					j--;
+				}
+				src[j + 1] = index;
+			}
+		}
+
+		for (int width = run; width < n; width *= 2) {
+			for (int left = 0; left < n; left += 2 * width) {
+				int mid = Math.min(left + width, n);
+				int right = Math.min(left + 2 * width, n);
+				int i = left, j = mid, k = left;
+				while (i < mid && j < right) {
+					// take from the right run only if it is strictly before, that keeps the sort stable
+					if (IndexSort.before(keys[src[j]], keys[src[i]], descending)) {
+						dst[k++] = src[j++];
+					} else {
+						dst[k++] = src[i++];
+					}
+				}
+				while (i < mid) {
+					dst[k++] = src[i++];
+				}
+				while (j < right) {
+					dst[k++] = src[j++];
+				}
+			}
+			int[] tmp = src;
+			src = dst;
+			dst = tmp;
+		}
+		if (src != indices) {
+			System.arraycopy(src, 0, indices, 0, n);
+		}
+	}
+
+	private static boolean before(double a, double b, boolean descending) {
+		return descending ? a > b : a < b;
+	}
+
+}
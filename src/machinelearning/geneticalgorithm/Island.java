@@ -0,0 +1,17 @@
+package machinelearning.geneticalgorithm;
+
+import java.util.List;
+
+// one population of an IslandModel. every method is only ever called from the island's own thread.
+public interface Island<G> {
+
+	public abstract void runGeneration();
+
+	// copies of up to count of the best members, they are handed to other threads so they must not share any
+	// mutable state with this island
+	public abstract List<G> emigrants(int count);
+
+	// replaces the worst members with the immigrants
+	public abstract void immigrate(List<G> immigrants);
+
+}
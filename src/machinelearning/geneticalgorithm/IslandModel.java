@@ -0,0 +1,130 @@
+package machinelearning.geneticalgorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+// runs every island on its own thread. every migrationInterval generations an island sends copies of its best
+// numMigrants members to its neighbours in the topology. migrants travel through lock free queues and are
+// taken in by the receiver before its next generation, so islands never wait for each other.
+public class IslandModel<G> {
+
+	public enum Topology {
+		// island i sends to i + 1
+		RING,
+		// islands on a grid of ceil(sqrt(k)) columns that wraps around, each sends to the right and below
+		TORUS,
+		// a random other island every migration
+		RANDOM;
+	}
+
+	private final List<Island<G>> islands;
+
+	private final List<Queue<List<G>>> inboxes;
+
+	private final Topology topology;
+
+	private final int migrationInterval;
+
+	private final int numMigrants;
+
+	public IslandModel(List<? extends Island<G>> islands, Topology topology, int migrationInterval,
+			int numMigrants) {
+		this.islands = new ArrayList<>(islands);
+		this.topology = topology;
+		this.migrationInterval = migrationInterval;
+		this.numMigrants = numMigrants;
+
+		this.inboxes = new ArrayList<>(this.islands.size());
+		for (int i = 0; i < this.islands.size(); i++) {
+			this.inboxes.add(new ConcurrentLinkedQueue<>());
+		}
+	}
+
+	// runs numGenerations generations on every island and returns when all islands are done
+	public void run(int numGenerations) {
+		ExecutorService executor = Executors.newFixedThreadPool(this.islands.size());
+		try {
+			List<Future<?>> futures = new ArrayList<>(this.islands.size());
+			for (int i = 0; i < this.islands.size(); i++) {
+				final int islandIndex = i;
+				futures.add(executor.submit(() -> this.runIsland(islandIndex, numGenerations)));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while running the islands", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("An island failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void runIsland(int islandIndex, int numGenerations) {
+		Island<G> island = this.islands.get(islandIndex);
+		Queue<List<G>> inbox = this.inboxes.get(islandIndex);
+
+		for (int generation = 1; generation <= numGenerations; generation++) {
+			for (List<G> immigrants = inbox.poll(); immigrants != null; immigrants = inbox.poll()) {
+				island.immigrate(immigrants);
+			}
+
+			island.runGeneration();
+
+			if (this.migrationInterval > 0 && generation % this.migrationInterval == 0) {
+				for (int target : this.targetsOf(islandIndex)) {
+					this.inboxes.get(target).offer(island.emigrants(this.numMigrants));
+				}
+			}
+		}
+	}
+
+	public int[] targetsOf(int islandIndex) {
+		int k = this.islands.size();
+		if (k < 2) {
+			return new int[0];
+		}
+		switch (this.topology) {
+		case RING:
+			return new int[] { (islandIndex + 1) % k };
+		case TORUS:
+			int columns = (int) Math.ceil(Math.sqrt(k));
+			int rows = (k + columns - 1) / columns;
+			int row = islandIndex / columns, column = islandIndex % columns;
+			int right = row * columns + (column + 1) % columns;
+			int below = ((row + 1) % rows) * columns + column;
+			// the last row of the grid might not be full
+			if (right >= k) {
+				right = row * columns;
+			}
+			if (below >= k) {
+				below = column;
+			}
+			if (right == below || below == islandIndex) {
+				return right == islandIndex ? new int[0] : new int[] { right };
+			}
+			if (right == islandIndex) {
+				return new int[] { below };
+			}
+			return new int[] { right, below };
+		case RANDOM:
+		default:
+			int target = ThreadLocalRandom.current().nextInt(k - 1);
+			return new int[] { target >= islandIndex ? target + 1 : target };
+		}
+	}
+
+	public List<Island<G>> getIslands() {
+		return this.islands;
+	}
+
+}
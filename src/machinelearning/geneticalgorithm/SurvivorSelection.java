@@ -0,0 +1,63 @@
+package machinelearning.geneticalgorithm;
+
+import math.AKRandom;
+
+// survivor selection strategies over a fitness array aligned with the population index.
+// every method returns population indices and never looks at the genotypes themselves.
+public final class SurvivorSelection {
+
+	private SurvivorSelection() {
+	}
+
+	// the numToKill least fit indices, ties are broken by the lower index first like killOffWorst always did.
+	// O(n log n)
+	public static int[] truncation(double[] fitness, int numToKill) {
+		numToKill = Math.max(0, Math.min(numToKill, fitness.length));
+		int[] sorted = IndexSort.ascending(fitness);
+		int[] killed = new int[numToKill];
+		System.arraycopy(sorted, 0, killed, 0, numToKill);
+		return killed;
+	}
+
+	// runs numToKill inverse tournaments of tournamentSize random living members each, the least fit member of a
+	// tournament is killed. O(numToKill * tournamentSize)
+	public static int[] tournament(double[] fitness, int numToKill, int tournamentSize) {
+		numToKill = Math.max(0, Math.min(numToKill, fitness.length));
+		int[] alive = new int[fitness.length];
+		for (int i = 0; i < alive.length; i++) {
+			alive[i] = i;
+		}
+		int numAlive = alive.length;
+
+		int[] killed = new int[numToKill];
+		for (int k = 0; k < numToKill; k++) {
+			int worstSlot = (int) AKRandom.randomNumber(0, numAlive);
+			for (int t = 1; t < tournamentSize; t++) {
+				int slot = (int) AKRandom.randomNumber(0, numAlive);
+				if (fitness[alive[slot]] < fitness[alive[worstSlot]]) {
+					worstSlot = slot;
+				}
+			}
+			killed[k] = alive[worstSlot];
+			// swap remove so the living members stay packed at the front
+			alive[worstSlot] = alive[--numAlive];
+		}
+		return killed;
+	}
+
+	// (mu + lambda) selection: parents and offspring compete and the mu fittest of both survive.
+	// indices below parentFitness.length are parents, the rest are parentFitness.length + offspring index.
+	// O((mu + lambda) log(mu + lambda))
+	public static int[] muPlusLambda(double[] parentFitness, double[] offspringFitness, int mu) {
+		double[] all = new double[parentFitness.length + offspringFitness.length];
+		System.arraycopy(parentFitness, 0, all, 0, parentFitness.length);
+		System.arraycopy(offspringFitness, 0, all, parentFitness.length, offspringFitness.length);
+
+		mu = Math.max(0, Math.min(mu, all.length));
+		int[] sorted = IndexSort.descending(all);
+		int[] survivors = new int[mu];
+		System.arraycopy(sorted, 0, survivors, 0, mu);
+		return survivors;
+	}
+
+}
@@ -0,0 +1,203 @@
+package machinelearning.ne.neat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import machinelearning.ne.neat.genome.BaseTemplate;
+import machinelearning.ne.neat.genome.ConnectionGene;
+import machinelearning.ne.neat.genome.Genome;
+
+// remembers the fitness of every genome it evaluated, keyed by the content of its genes rather than its ID,
+// so carried over champions and unmutated clones are not evaluated again.
+// only use this when the fitness function is deterministic. a genome whose weights were changed in place by
+// mutate has a different key afterwards, so it is never served a stale fitness.
+public class CachingFitnessEvaluator implements FitnessEvaluator {
+
+	// evaluates the misses, null evaluates them sequentially on the calling thread
+	private final FitnessEvaluator delegate;
+
+	private final int maxEntries;
+	// entries that were not used for this many generations are evicted, <= 0 disables age eviction
+	private final int maxAge;
+
+	// access ordered so the eldest entry is the least recently used one
+	private final LinkedHashMap<GenomeKey, Entry> cache;
+
+	private long hits, misses, evictions;
+
+	public CachingFitnessEvaluator(int maxEntries) {
+		this(null, maxEntries, 0);
+	}
+
+	public CachingFitnessEvaluator(FitnessEvaluator delegate, int maxEntries, int maxAge) {
+		this.delegate = delegate;
+		this.maxEntries = maxEntries;
+		this.maxAge = maxAge;
+		this.cache = new LinkedHashMap<GenomeKey, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<GenomeKey, Entry> eldest) {
+				if (this.size() > CachingFitnessEvaluator.this.maxEntries) {
+					CachingFitnessEvaluator.this.evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	@Override
+	public List<Double> calculateFitness(List<Genome> genos, NEAT neat, NEATTrainer trainer) {
+		int generation = neat.getCurrentGenerationFinished() + 1;
+		this.evictOld(generation);
+
+		double[] fitnesses = new double[genos.size()];
+		GenomeKey[] keys = new GenomeKey[genos.size()];
+
+		// identical genomes in the same generation are only evaluated once
+		Map<GenomeKey, Integer> missIndices = new HashMap<>();
+		List<Genome> missGenos = new ArrayList<>();
+
+		for (int i = 0; i < genos.size(); i++) {
+			keys[i] = new GenomeKey(genos.get(i));
+			Entry entry = this.cache.get(keys[i]);
+			if (entry != null) {
+				entry.lastGeneration = generation;
+				fitnesses[i] = entry.fitness;
+				this.hits++;
+			} else {
+				this.misses++;
+				if (!missIndices.containsKey(keys[i])) {
+					missIndices.put(keys[i], missGenos.size());
+					missGenos.add(genos.get(i));
+				}
+			}
+		}
+
+		List<Double> missFitnesses;
+		if (missGenos.isEmpty()) {
+			missFitnesses = new ArrayList<>(0);
+		} else if (this.delegate != null) {
+			missFitnesses = this.delegate.calculateFitness(missGenos, neat, trainer);
+		} else {
+			missFitnesses = new ArrayList<>(missGenos.size());
+			for (Genome geno : missGenos) {
+				missFitnesses.add(trainer.calculateFitness(geno, neat));
+			}
+		}
+
+		List<Double> result = new ArrayList<>(genos.size());
+		for (int i = 0; i < genos.size(); i++) {
+			Integer missIndex = missIndices.get(keys[i]);
+			if (missIndex != null) {
+				fitnesses[i] = missFitnesses.get(missIndex);
+			}
+			result.add(fitnesses[i]);
+		}
+		for (Map.Entry<GenomeKey, Integer> miss : missIndices.entrySet()) {
+			this.cache.put(miss.getKey(), new Entry(missFitnesses.get(miss.getValue()), generation));
+		}
+		return result;
+	}
+
+	private void evictOld(int generation) {
+		if (this.maxAge <= 0) {
+			return;
+		}
+		for (Iterator<Entry> it = this.cache.values().iterator(); it.hasNext();) {
+			if (generation - it.next().lastGeneration > this.maxAge) {
+				it.remove();
+				this.evictions++;
+			}
+		}
+	}
+
+	public void clear() {
+		this.cache.clear();
+	}
+
+	public int size() {
+		return this.cache.size();
+	}
+
+	public long getHits() {
+		return this.hits;
+	}
+
+	public long getMisses() {
+		return this.misses;
+	}
+
+	public long getEvictions() {
+		return this.evictions;
+	}
+
+	public double getHitRate() {
+		long lookups = this.hits + this.misses;
+		return lookups == 0 ? 0.0 : (double) this.hits / lookups;
+	}
+
+	private static class Entry {
+		final double fitness;
+		int lastGeneration;
+
+		Entry(double fitness, int lastGeneration) {
+			this.fitness = fitness;
+			this.lastGeneration = lastGeneration;
+		}
+	}
+
+	// everything that decides what network a genome builds: the template and every gene
+	static class GenomeKey {
+		private final long[] data;
+		private final int hash;
+
+		GenomeKey(Genome geno) {
+			BaseTemplate template = geno.getBaseTemplate();
+			// the activation functions are packed 8 per long after the genes
+			int numNodeIDs = geno.hasActivationFunctions()
+					? template.numInputNodes() + template.numOutputNodes() + geno.getNumHiddenNodes() + 1
+					: 0;
+			this.data = new long[1 + 3 * geno.size() + (numNodeIDs + 7) / 8];
+			this.data[0] = ((long) template.numInputNodes() << 33) | ((long) template.numOutputNodes() << 1)
+					| (template.hasBias() ? 1 : 0);
+			int d = 1;
+			for (ConnectionGene cg : geno) {
+				this.data[d++] = ((long) cg.getInnovationNumber() << 1) | (cg.isEnabled() ? 1 : 0);
+				this.data[d++] = ((long) cg.getInputNodeID() << 32) | (cg.getOutputNodeID() & 0xFFFFFFFFL);
+				this.data[d++] = Double.doubleToLongBits(cg.getConnectionWeight());
+			}
+			for (int nodeID = 0; nodeID < numNodeIDs; nodeID++) {
+				this.data[d + nodeID / 8] |= (long) geno.getActivationFunction(nodeID).ordinal() << (nodeID % 8 * 8);
+			}
+
+			long h = 0x9E3779B97F4A7C15L;
+			for (long l : this.data) {
+				h = (h ^ l) * 0xBF58476D1CE4E5B9L;
+				h ^= h >>> 31;
+			}
+			this.hash = (int) (h ^ (h >>> 32));
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object another) {
+			if (another instanceof GenomeKey) {
+				GenomeKey anotherKey = (GenomeKey) another;
+				return this.hash == anotherKey.hash && Arrays.equals(this.data, anotherKey.data);
+			}
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,221 @@
+package machinelearning.ne.neat;
+
+import machinelearning.ne.neat.genome.ActivationFunction;
+import machinelearning.ne.neat.genome.BaseTemplate;
+import machinelearning.ne.neat.genome.CompactGenome;
+import machinelearning.ne.neat.genome.CompactGenomeArena;
+
+// the default mutation, crossover and similarity of NEATTrainer for CompactGenome.
+// every method draws from neat.akRandom in the same order as its NEATTrainer counterpart, so given the same
+// random sequence both representations evolve the same way.
+public final class CompactGenomeOperators {
+
+	private CompactGenomeOperators() {
+	}
+
+	public static void mutate(CompactGenome geno, NEAT neat) {
+		NEATStats stats = neat.getNeatStats();
+
+		if (neat.akRandom.nextRandomChance(stats.getAlterAllWeightsProbability(neat))) {
+			for (int i = 0; i < geno.size(); i++) {
+				CompactGenomeOperators.mutateConnectionGene(geno, i, neat);
+			}
+		}
+
+		boolean probablyMutatedStructure = false;
+
+		if (neat.akRandom.nextRandomChance(stats.getAddConnectionProbability(neat))) {
+			CompactGenomeOperators.mutateAddConnection(geno, neat);
+			probablyMutatedStructure = true;
+		}
+
+		if (neat.akRandom.nextRandomChance(stats.getAddNodeProbability(neat))) {
+			CompactGenomeOperators.mutateAddNode(geno, neat);
+			probablyMutatedStructure = true;
+		}
+
+		double changeActivationFunctionProbability = stats.getChangeActivationFunctionProbability(neat);
+		if (changeActivationFunctionProbability > 0
+				&& neat.akRandom.nextRandomChance(changeActivationFunctionProbability)) {
+			CompactGenomeOperators.mutateActivationFunction(geno, neat);
+		}
+
+		if (probablyMutatedStructure) {
+			geno.cleanup();
+		}
+	}
+
+	public static void mutateActivationFunction(CompactGenome geno, NEAT neat) {
+		int firstNodeID = geno.getBaseTemplate().numInputNodes() + 1;
+		int numNodes = geno.getBaseTemplate().numOutputNodes() + geno.getNumHiddenNodes();
+		int nodeID = firstNodeID + (int) neat.akRandom.nextRandomNumber(numNodes);
+		geno.setActivationFunction(nodeID,
+				ActivationFunction.of((int) neat.akRandom.nextRandomNumber(ActivationFunction.count())));
+	}
+
+	public static boolean isValidConnection(int inputNodeID, int outputNodeID, CompactGenome geno) {
+		return CompactGenomeOperators.isValidConnection(inputNodeID, outputNodeID, geno, false);
+	}
+
+	public static boolean isValidConnection(int inputNodeID, int outputNodeID, CompactGenome geno,
+			boolean isRecurrentAllowed) {
+		if (!isRecurrentAllowed && inputNodeID == outputNodeID) {
+			return false;
+		}
+		if (geno.hasConnection(inputNodeID, outputNodeID)
+				|| (!isRecurrentAllowed && geno.hasConnection(outputNodeID, inputNodeID))) {
+			return false;
+		}
+		int layer2 = geno.layerOf(outputNodeID);
+
+		if (layer2 == 0) {
+			return false;
+		}
+		if (!isRecurrentAllowed && geno.wouldCreateCycle(inputNodeID, outputNodeID)) {
+			return false;
+		}
+		return true;
+	}
+
+	public static void mutateAddConnection(CompactGenome geno, NEAT neat) {
+		int inputNodeID = 0;
+		int outputNodeID = 0;
+
+		boolean isRecurrentAllowed = neat.getNeatStats().isRecurrentAllowed(neat);
+		for (int iterations = 0; !CompactGenomeOperators.isValidConnection(inputNodeID, outputNodeID, geno,
+				isRecurrentAllowed); iterations++) {
+
+			if (neat.akRandom.nextRandomChance(0.00) && geno.getBaseTemplate().hasBias()) {
+				inputNodeID = 0;
+			} else {
+				inputNodeID = (int) neat.akRandom.nextRandomNumber(geno.getNumTotalNodes() - 1) + 1;
+			}
+
+			outputNodeID = (int) neat.akRandom.nextRandomNumber(geno.getNumTotalNodes());
+			if (iterations > 100) {
+				long key = geno.sampleUnusedConnection(
+						(in, out) -> CompactGenomeOperators.isValidConnection(in, out, geno, isRecurrentAllowed),
+						neat.akRandom);
+				if (key == -1) {
+					return;
+				}
+				inputNodeID = (int) (key >>> 32);
+				outputNodeID = (int) key;
+				break;
+			}
+		}
+
+		int innovationNumber = neat.getInnovationNumberForConnectionMutation(inputNodeID, outputNodeID);
+		double weightRandomStrengh = neat.getNeatStats().getWeightRandomizeStrengh(neat);
+		double connectionWeight = neat.akRandom.nextRandomNumber(-weightRandomStrengh, weightRandomStrengh);
+
+		geno.addGene(innovationNumber, inputNodeID, outputNodeID, connectionWeight, true);
+	}
+
+	public static void mutateAddNode(CompactGenome geno, NEAT neat) {
+		int toSplit = -1;
+
+		for (int iterations = 0; toSplit < 0 || !geno.isEnabled(toSplit); iterations++) {
+			toSplit = (int) neat.akRandom.nextRandomNumber(geno.size());
+
+			if (iterations > 100) {
+				return;
+			}
+		}
+
+		geno.setEnabled(toSplit, false);
+
+		int inputNodeID = geno.getInputNodeID(toSplit), outputNodeID = geno.getOutputNodeID(toSplit);
+		double splitWeight = geno.getConnectionWeight(toSplit);
+
+		int newNodeID = geno.addNewHiddenNode();
+
+		int innovationNumber1 = neat.getInnovationNumberForConnectionMutation(inputNodeID, newNodeID);
+		int innovationNumber2 = neat.getInnovationNumberForConnectionMutation(newNodeID, outputNodeID);
+
+		geno.addGene(innovationNumber1, inputNodeID, newNodeID, 1.0, true);
+		geno.addGene(innovationNumber2, newNodeID, outputNodeID, splitWeight, true);
+	}
+
+	public static void mutateConnectionGene(CompactGenome geno, int i, NEAT neat) {
+		if (neat.akRandom.nextRandomChance(neat.getNeatStats().getWeightRandomizeProbability(neat))) {
+			double strength = neat.getNeatStats().getWeightRandomizeStrengh(neat);
+			geno.setConnectionWeight(i, neat.akRandom.nextRandomNumber(-strength, strength));
+		} else {
+			double shiftStrength = neat.getNeatStats().getWeightShiftStrengh(neat);
+			geno.setConnectionWeight(i,
+					geno.getConnectionWeight(i) + neat.akRandom.nextRandomNumber(-shiftStrength, shiftStrength));
+		}
+
+		if (neat.akRandom.nextRandomChance(neat.getNeatStats().getToggleConnectionProbability(neat))) {
+			geno.setEnabled(i, !geno.isEnabled(i));
+		}
+	}
+
+	// assumes a is the more fit parent
+	public static CompactGenome crossover(CompactGenome a, CompactGenome b, NEAT neat) {
+		return CompactGenomeOperators.crossover(a, b, neat, null);
+	}
+
+	// the child is allocated in arena unless it is null
+	public static CompactGenome crossover(CompactGenome a, CompactGenome b, NEAT neat, CompactGenomeArena arena) {
+		BaseTemplate baseTemplate = NEATTrainer.forgeBaseTemplates(a.getBaseTemplate(), b.getBaseTemplate());
+		int numHiddenNodes = Math.max(a.getNumHiddenNodes(), b.getNumHiddenNodes());
+		CompactGenome child = arena == null
+				? new CompactGenome(neat.getNewGenomeID(), baseTemplate, numHiddenNodes, a.size())
+				: arena.newGenome(neat.getNewGenomeID(), baseTemplate, numHiddenNodes, a.size());
+
+		child.inheritGenes(a, b, neat.akRandom);
+		child.inheritActivationFunctions(a, b);
+		return child;
+	}
+
+	public static double similarity(CompactGenome a, CompactGenome b, double c1, double c2, double c3) {
+		int N = Math.max(a.size(), b.size());
+		if (N < 20) {
+			N = 1;
+		}
+
+		int numExcess = 0;
+		int numDisjoint = 0;
+		double avgWeightDiff = 0;
+		int numCommonGenes = 0;
+
+		int size1 = a.size(), size2 = b.size();
+		int i1 = 0;
+		int i2 = 0;
+		while (i1 < size1 && i2 < size2) {
+			int innov1 = a.getInnovationNumber(i1);
+			int innov2 = b.getInnovationNumber(i2);
+			if (innov1 == innov2) {
+				numCommonGenes++;
+				avgWeightDiff += Math.abs(a.getConnectionWeight(i1) - b.getConnectionWeight(i2));
+				i1++;
+				i2++;
+			} else if (innov1 < innov2) {
+				numDisjoint++;
+				i1++;
+			} else {
+				numDisjoint++;
+				i2++;
+			}
+		}
+		numExcess += size1 - i1 + size2 - i2;
+		avgWeightDiff /= numCommonGenes;
+
+		double similarity = 0;
+
+		similarity += c1 * numExcess / N;
+		similarity += c2 * numDisjoint / N;
+		similarity += c3 * avgWeightDiff;
+
+		return similarity;
+	}
+
+	public static boolean areSimilar(CompactGenome a, CompactGenome b, NEAT neat) {
+		NEATStats stats = neat.getNeatStats();
+		return CompactGenomeOperators.similarity(a, b, stats.getC1(neat), stats.getC2(neat),
+				stats.getC3(neat)) <= stats.getDeltaThreshold(neat);
+	}
+
+}
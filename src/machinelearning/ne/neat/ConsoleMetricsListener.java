@@ -0,0 +1,38 @@
+package machinelearning.ne.neat;
+
+// the messages NEAT used to print by itself, add it with NEAT.addMetricsListener to get them back
+public class ConsoleMetricsListener implements NEATMetricsListener {
+
+	private final boolean printGenerationSummary;
+
+	public ConsoleMetricsListener() {
+		this(false);
+	}
+
+	public ConsoleMetricsListener(boolean printGenerationSummary) {
+		this.printGenerationSummary = printGenerationSummary;
+	}
+
+	@Override
+	public void championsCopied(NEAT neat, int numChampions) {
+		System.out.println("Copied " + numChampions + " champions from previous species.");
+	}
+
+	@Override
+	public void speciesBorn(NEAT neat, Species spec) {
+		System.err.println("NEW SPECIES: " + spec.ID);
+	}
+
+	@Override
+	public void speciesDied(NEAT neat, Species spec) {
+		System.err.println("DEAD SPECIES: " + spec.ID);
+	}
+
+	@Override
+	public void generationFinished(NEAT neat, GenerationMetrics metrics) {
+		if (this.printGenerationSummary) {
+			System.out.println(metrics);
+		}
+	}
+
+}
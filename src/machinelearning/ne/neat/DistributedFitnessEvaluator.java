@@ -0,0 +1,27 @@
+package machinelearning.ne.neat;
+
+import java.util.List;
+
+import machinelearning.distributed.FitnessCoordinator;
+import machinelearning.ne.neat.genome.Genome;
+
+// evaluates the genomes on the FitnessWorkers of a coordinator. the workers compute the fitness themselves, so
+// NEATTrainer.calculateFitness(Genome, NEAT) is not called.
+public class DistributedFitnessEvaluator implements FitnessEvaluator {
+
+	private final FitnessCoordinator<Genome> coordinator;
+
+	public DistributedFitnessEvaluator(FitnessCoordinator<Genome> coordinator) {
+		this.coordinator = coordinator;
+	}
+
+	@Override
+	public List<Double> calculateFitness(List<Genome> genos, NEAT neat, NEATTrainer trainer) {
+		return this.coordinator.calculateFitness(genos);
+	}
+
+	public FitnessCoordinator<Genome> getCoordinator() {
+		return this.coordinator;
+	}
+
+}
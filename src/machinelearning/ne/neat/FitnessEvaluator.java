@@ -0,0 +1,13 @@
+package machinelearning.ne.neat;
+
+import java.util.List;
+
+import machinelearning.ne.neat.genome.Genome;
+
+// strategy used by NEATTrainer.calculateFitness(List<Genome>, NEAT) to evaluate a whole population.
+// the returned list must be in the same order as genos (index i is the fitness of genos.get(i))
+public interface FitnessEvaluator {
+
+	public abstract List<Double> calculateFitness(List<Genome> genos, NEAT neat, NEATTrainer trainer);
+
+}
@@ -0,0 +1,136 @@
+package machinelearning.ne.neat;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+// what happened during one generation of NEAT. allocation is only what the generation thread allocated, work
+// done on a FitnessEvaluator's threads shows up in the time but not in the bytes.
+public class GenerationMetrics {
+
+	private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+	public final int generation;
+
+	private final long[] phaseNanos = new long[GenerationPhase.values().length];
+	private final long[] phaseBytes = new long[GenerationPhase.values().length];
+
+	int speciesBorn;
+	int speciesDied;
+	int numSpecies;
+
+	int newInnovations;
+	long innovationHits;
+	long innovationMisses;
+
+	int numEvaluated;
+
+	private long lastNanos;
+	private long lastBytes;
+
+	private int startInnovationNumber;
+	private long startHits;
+	private long startMisses;
+
+	GenerationMetrics(NEAT neat, int generation) {
+		this.generation = generation;
+		this.startInnovationNumber = neat.currentInnovationNumber;
+		this.startHits = neat.getInnovationRegistry().getHits();
+		this.startMisses = neat.getInnovationRegistry().getMisses();
+
+		this.lastBytes = GenerationMetrics.allocatedBytes();
+		this.lastNanos = System.nanoTime();
+	}
+
+	// records the time and allocation since the previous phase ended
+	void finishPhase(GenerationPhase phase) {
+		long nanos = System.nanoTime();
+		long bytes = GenerationMetrics.allocatedBytes();
+		this.phaseNanos[phase.ordinal()] += nanos - this.lastNanos;
+		this.phaseBytes[phase.ordinal()] += bytes - this.lastBytes;
+		this.lastNanos = nanos;
+		this.lastBytes = bytes;
+	}
+
+	void finishGeneration(NEAT neat) {
+		this.numSpecies = neat.species.size();
+		this.newInnovations = neat.currentInnovationNumber - this.startInnovationNumber;
+		this.innovationHits = neat.getInnovationRegistry().getHits() - this.startHits;
+		this.innovationMisses = neat.getInnovationRegistry().getMisses() - this.startMisses;
+	}
+
+	static long allocatedBytes() {
+		if (GenerationMetrics.THREAD_BEAN instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) GenerationMetrics.THREAD_BEAN)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+	public long getPhaseNanos(GenerationPhase phase) {
+		return this.phaseNanos[phase.ordinal()];
+	}
+
+	public long getPhaseAllocatedBytes(GenerationPhase phase) {
+		return this.phaseBytes[phase.ordinal()];
+	}
+
+	public long getTotalNanos() {
+		long total = 0;
+		for (long nanos : this.phaseNanos) {
+			total += nanos;
+		}
+		return total;
+	}
+
+	public int getSpeciesBorn() {
+		return this.speciesBorn;
+	}
+
+	public int getSpeciesDied() {
+		return this.speciesDied;
+	}
+
+	public int getNumSpecies() {
+		return this.numSpecies;
+	}
+
+	public int getNewInnovations() {
+		return this.newInnovations;
+	}
+
+	public long getInnovationHits() {
+		return this.innovationHits;
+	}
+
+	public long getInnovationMisses() {
+		return this.innovationMisses;
+	}
+
+	public int getNumEvaluated() {
+		return this.numEvaluated;
+	}
+
+	// genomes evaluated per second of the fitness phase
+	public double getEvaluationThroughput() {
+		long nanos = this.getPhaseNanos(GenerationPhase.FITNESS);
+		return nanos == 0 ? 0.0 : this.numEvaluated * 1e9 / nanos;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder str = new StringBuilder();
+		str.append("Generation ").append(this.generation).append(": ");
+		str.append(String.format("%.2f ms", this.getTotalNanos() / 1e6));
+		for (GenerationPhase phase : GenerationPhase.values()) {
+			str.append(String.format(", %s %.2f ms / %,d B", phase, this.getPhaseNanos(phase) / 1e6,
+					this.getPhaseAllocatedBytes(phase)));
+		}
+		str.append('\n');
+		str.append("Species: ").append(this.numSpecies).append(" (+").append(this.speciesBorn).append(" -")
+				.append(this.speciesDied).append("), new innovations: ").append(this.newInnovations)
+				.append(", evaluations: ").append(this.numEvaluated)
+				.append(String.format(" (%.1f/s)", this.getEvaluationThroughput()));
+		return str.toString();
+	}
+
+}
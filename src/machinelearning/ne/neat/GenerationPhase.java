@@ -0,0 +1,6 @@
+package machinelearning.ne.neat;
+
+// the phases NEAT.runGeneration goes through, in order
+public enum GenerationPhase {
+	CULL, REPRODUCTION, FITNESS, SPECIATION, EXTINCTION;
+}
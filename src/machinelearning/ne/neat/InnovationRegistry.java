@@ -0,0 +1,159 @@
+package machinelearning.ne.neat;
+
+import java.util.Arrays;
+
+// maps a connection structure (inputNodeID -> outputNodeID) to its innovation number.
+// open addressing hash table over keys packed into a long, so lookups don't box or allocate.
+public class InnovationRegistry {
+
+	private static final long EMPTY = -1L;
+
+	private long[] keys;
+	private int[] innovations;
+	private int size;
+
+	// persistent registries keep their innovations across generations so the same structure gets the same
+	// innovation number for the whole run, otherwise they only match mutations within a generation
+	private boolean persistent;
+
+	private long hits, misses;
+
+	public InnovationRegistry() {
+		this(false);
+	}
+
+	public InnovationRegistry(boolean persistent) {
+		this.persistent = persistent;
+		this.keys = new long[64];
+		this.innovations = new int[64];
+		Arrays.fill(this.keys, InnovationRegistry.EMPTY);
+		this.size = 0;
+	}
+
+	public static long key(int inputNodeID, int outputNodeID) {
+		return ((long) inputNodeID << 32) | (outputNodeID & 0xFFFFFFFFL);
+	}
+
+	private int slot(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash >>> 32) & (this.keys.length - 1);
+	}
+
+	// returns the innovation number or -1 if the structure is not registered
+	public int get(int inputNodeID, int outputNodeID) {
+		long key = InnovationRegistry.key(inputNodeID, outputNodeID);
+		int mask = this.keys.length - 1;
+		for (int i = this.slot(key);; i = (i + 1) & mask) {
+			long k = this.keys[i];
+			if (k == key) {
+				this.hits++;
+				return this.innovations[i];
+			}
+			if (k == InnovationRegistry.EMPTY) {
+				this.misses++;
+				return -1;
+			}
+		}
+	}
+
+	public void put(int inputNodeID, int outputNodeID, int innovationNumber) {
+		this.putKey(InnovationRegistry.key(inputNodeID, outputNodeID), innovationNumber);
+	}
+
+	private void insert(long key, int innovationNumber) {
+		int mask = this.keys.length - 1;
+		for (int i = this.slot(key);; i = (i + 1) & mask) {
+			if (this.keys[i] == key) {
+				this.innovations[i] = innovationNumber;
+				return;
+			}
+			if (this.keys[i] == InnovationRegistry.EMPTY) {
+				this.keys[i] = key;
+				this.innovations[i] = innovationNumber;
+				this.size++;
+				return;
+			}
+		}
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = this.keys;
+		int[] oldInnovations = this.innovations;
+		this.keys = new long[capacity];
+		this.innovations = new int[capacity];
+		Arrays.fill(this.keys, InnovationRegistry.EMPTY);
+		this.size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != InnovationRegistry.EMPTY) {
+				this.insert(oldKeys[i], oldInnovations[i]);
+			}
+		}
+	}
+
+	// copies the registered keys and innovation numbers into the given arrays (at least size() long)
+	void export(long[] keys, int[] innovations) {
+		int j = 0;
+		for (int i = 0; i < this.keys.length; i++) {
+			if (this.keys[i] != InnovationRegistry.EMPTY) {
+				keys[j] = this.keys[i];
+				innovations[j] = this.innovations[i];
+				j++;
+			}
+		}
+	}
+
+	void putKey(long key, int innovationNumber) {
+		if ((this.size + 1) * 2 > this.keys.length) {
+			this.resize(this.keys.length * 2);
+		}
+		this.insert(key, innovationNumber);
+	}
+
+	void setCounts(long hits, long misses) {
+		this.hits = hits;
+		this.misses = misses;
+	}
+
+	// called by NEAT at the end of every generation
+	public void endGeneration() {
+		if (!this.persistent) {
+			this.clear();
+		}
+	}
+
+	public void clear() {
+		Arrays.fill(this.keys, InnovationRegistry.EMPTY);
+		this.size = 0;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isPersistent() {
+		return this.persistent;
+	}
+
+	public void setPersistent(boolean persistent) {
+		this.persistent = persistent;
+	}
+
+	public long getHits() {
+		return this.hits;
+	}
+
+	public long getMisses() {
+		return this.misses;
+	}
+
+	public double getHitRate() {
+		long lookups = this.hits + this.misses;
+		return lookups == 0 ? 0.0 : (double) this.hits / lookups;
+	}
+
+	public void resetCounts() {
+		this.hits = 0;
+		this.misses = 0;
+	}
+
+}
@@ -0,0 +1,64 @@
+package machinelearning.ne.neat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+import machinelearning.ne.neat.genome.Genome;
+import machinelearning.ne.neat.network.PopulationNetwork;
+
+// for problems where every genome sees the same fixed inputs, like a supervised data set.
+// the whole population is packed into one PopulationNetwork and run on the inputs together, then score turns the
+// outputs of one genome (row major numSamples x numOutputNodes) into its fitness. the outputs array is reused, so score
+// must not keep it.
+public class LockstepFitnessEvaluator implements FitnessEvaluator {
+
+	// row major numSamples x numInputNodes
+	private final double[] inputs;
+	private final int numSamples;
+
+	private final ToDoubleFunction<double[]> score;
+
+	private final boolean fastExp;
+
+	// reused by the network of every generation
+	private final PopulationNetwork.BatchBuffers buffers = new PopulationNetwork.BatchBuffers();
+	private double[][] outputs = new double[0][];
+
+	public LockstepFitnessEvaluator(double[][] inputs, ToDoubleFunction<double[]> score, boolean fastExp) {
+		this.numSamples = inputs.length;
+		int numInputNodes = inputs.length == 0 ? 0 : inputs[0].length;
+		this.inputs = new double[this.numSamples * numInputNodes];
+		for (int s = 0; s < this.numSamples; s++) {
+			System.arraycopy(inputs[s], 0, this.inputs, s * numInputNodes, numInputNodes);
+		}
+		this.score = score;
+		this.fastExp = fastExp;
+	}
+
+	// synchronized because of the shared buffers
+	@Override
+	public synchronized List<Double> calculateFitness(List<Genome> genos, NEAT neat, NEATTrainer trainer) {
+		List<Double> fitnesses = new ArrayList<>(genos.size());
+		if (genos.isEmpty()) {
+			return fitnesses;
+		}
+		PopulationNetwork population = new PopulationNetwork(genos, this.fastExp);
+		int outputLength = this.numSamples * population.getNumOutputNodes();
+		if (this.outputs.length < genos.size()) {
+			this.outputs = Arrays.copyOf(this.outputs, genos.size());
+		}
+		for (int n = 0; n < genos.size(); n++) {
+			if (this.outputs[n] == null || this.outputs[n].length != outputLength) {
+				this.outputs[n] = new double[outputLength];
+			}
+		}
+		population.calculateBatch(this.inputs, this.numSamples, this.outputs, this.buffers);
+		for (int n = 0; n < genos.size(); n++) {
+			fitnesses.add(this.score.applyAsDouble(this.outputs[n]));
+		}
+		return fitnesses;
+	}
+
+}
@@ -5,8 +5,15 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-
-import data.tuple.Tuple2D;
+import java.util.OptionalInt;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import machinelearning.geneticalgorithm.FitnessSampler;
 import machinelearning.ne.neat.genome.Genome;
 import math.AKRandom;
 
@@ -25,9 +32,21 @@ public class NEAT implements Iterable<Genome> {
 
 	private NEATStats neatStats;
 
+	// null evaluates the population sequentially on the calling thread
+	private FitnessEvaluator fitnessEvaluator;
+
+	private final List<NEATMetricsListener> metricsListeners = new ArrayList<>();
+
+	// metrics of the generation that is running, null when there are no listeners
+	private GenerationMetrics currentMetrics;
+
 	private List<Genome> population;
 
-	public final AKRandom akRandom = new AKRandom();
+	// set while runGenerationPipelined breeds, gets every new member of the population as soon as it is ready
+	private Consumer<Genome> offspringSink;
+
+	// only reassigned when a checkpoint is restored
+	public AKRandom akRandom = new AKRandom();
 
 	public NEAT(int preferredPopulationSize, NEATTrainer trainer, NEATStats neatStats) {
 		this.setTrainer(trainer);
@@ -46,13 +65,18 @@ public class NEAT implements Iterable<Genome> {
 
 	// runs the first generation (generation 0)
 	public void initialize() {
+		this.startMetrics();
 		this.population = new ArrayList<>(this.preferredPopulationSize);
 		for (int i = 0; i < this.preferredPopulationSize; i++) {
 			this.population.add(this.trainer.generateRandom(this));
 		}
+		this.finishPhase(GenerationPhase.REPRODUCTION);
 		this.calculateFitnesses(this.population);
+		this.finishPhase(GenerationPhase.FITNESS);
 		this.putIntoSpecies(this.population);
+		this.finishPhase(GenerationPhase.SPECIATION);
 		this.currentGenerationFinished = 0;
+		this.finishMetrics();
 	}
 
 	// AVERAGE FITNESS OF A SPECIES IS SAME AS THE TOTAL (SUM OF) ADJUSTED FITNESSES
@@ -62,20 +86,10 @@ public class NEAT implements Iterable<Genome> {
 	// then it will use the current population to calculate the next generation
 	// population.
 	public void runGeneration() {
+		this.startMetrics();
 
-		// WE NEED TO NOT LET HALF OF THE SPECIES REPRODUCE, KILL THEM OFF OR SOMETHING
-		for (Species spec : this.species) {
-			// sort by fitness
-			spec.sortByFitness(this);
-
-			// kill off half
-			// midPoint is second mid index if size is even, and the real mid index when odd
-			int midPoint = spec.size() / 2 + 1;
-
-			for (int i = spec.size() - 1; i >= midPoint; i--) {
-				spec.remove(i);
-			}
-		}
+		this.cullSpecies();
+		this.finishPhase(GenerationPhase.CULL);
 
 		// NOW CONSTRUCTING NEXT GEN
 
@@ -94,20 +108,163 @@ public class NEAT implements Iterable<Genome> {
 			spec.assignNewRandomRepresentative();
 			spec.clear();
 		}
+		this.finishPhase(GenerationPhase.REPRODUCTION);
 
 		// this.fitnesses.clear();
 
 		this.calculateFitnesses(this.population);
+		this.finishPhase(GenerationPhase.FITNESS);
 
 		// Place genomes into species
 		this.putIntoSpecies(this.population);
+		this.finishPhase(GenerationPhase.SPECIATION);
 
 		// Remove unused empty species
 		this.removeExtinctSpecies();
+		this.finishPhase(GenerationPhase.EXTINCTION);
+
+		this.currentGenerationFinished++;
+		this.finishMetrics();
+		this.endInnovationGeneration();
+
+	}
+
+	private void cullSpecies() {
+		// WE NEED TO NOT LET HALF OF THE SPECIES REPRODUCE, KILL THEM OFF OR SOMETHING
+		for (Species spec : this.species) {
+			// sort by fitness
+			spec.sortByFitness(this);
+
+			// kill off half
+			// midPoint is second mid index if size is even, and the real mid index when odd
+			int midPoint = spec.size() / 2 + 1;
+
+			for (int i = spec.size() - 1; i >= midPoint; i--) {
+				spec.remove(i);
+			}
+		}
+	}
+
+	// the same generation as runGeneration, but every offspring is sent to the evaluator as soon as it is bred
+	// and put into its species as soon as its fitness is back, while the next ones are still being bred.
+	// the representatives are picked before breeding and new members are staged until breeding is done, because
+	// the species still hold the parents until then. champions are evaluated last because they are still parents
+	// while breeding: cloning one with new Genome(ID, selected) writes its gene owner, which would race with an
+	// evaluator reading it on another thread, and selection reads its fitness, which its evaluation would replace.
+	// the evaluator may call back on any thread.
+	public void runGenerationPipelined(Function<Genome, CompletableFuture<Double>> evaluator) {
+		this.startMetrics();
+
+		this.cullSpecies();
+		this.finishPhase(GenerationPhase.CULL);
+
+		for (Species spec : this.species) {
+			spec.assignNewRandomRepresentative();
+		}
+		List<Species> candidates = new ArrayList<>(this.species);
+		Map<Species, List<Genome>> staged = new HashMap<>();
+		for (Species spec : this.species) {
+			staged.put(spec, new ArrayList<>());
+		}
+
+		BlockingQueue<Object[]> evaluated = new LinkedBlockingQueue<>();
+		int[] numPending = new int[1];
+		Consumer<Genome> submit = geno -> {
+			numPending[0]++;
+			evaluator.apply(geno).whenComplete((fitness, error) -> evaluated.add(new Object[] { geno, fitness, error }));
+		};
+
+		this.offspringSink = geno -> {
+			submit.accept(geno);
+			for (Object[] result = evaluated.poll(); result != null; result = evaluated.poll()) {
+				numPending[0]--;
+				this.putEvaluatedIntoSpecies(result, candidates, staged);
+			}
+		};
+		try {
+			this.assignNextGenerationFromSpecies();
+		} finally {
+			this.offspringSink = null;
+		}
+		for (Species spec : this.species) {
+			if (spec.size() > 0) {
+				submit.accept(spec.get(0));
+			}
+		}
+		this.finishPhase(GenerationPhase.REPRODUCTION);
+
+		try {
+			for (; numPending[0] > 0; numPending[0]--) {
+				this.putEvaluatedIntoSpecies(evaluated.take(), candidates, staged);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while calculating fitnesses", e);
+		}
+		if (this.currentMetrics != null) {
+			this.currentMetrics.numEvaluated += this.population.size();
+		}
+		this.finishPhase(GenerationPhase.FITNESS);
+
+		for (Species spec : this.species) {
+			spec.clear();
+			spec.addAll(staged.get(spec));
+		}
+		for (int i = this.species.size(); i < candidates.size(); i++) {
+			this.species.add(candidates.get(i));
+		}
+		for (Species spec : this.species) {
+			spec.age++;
+		}
+		this.finishPhase(GenerationPhase.SPECIATION);
+
+		this.removeExtinctSpecies();
+		this.finishPhase(GenerationPhase.EXTINCTION);
 
 		this.currentGenerationFinished++;
-		this.generationalInnovations.clear();
+		this.finishMetrics();
+		this.endInnovationGeneration();
+	}
 
+	private void putEvaluatedIntoSpecies(Object[] result, List<Species> candidates,
+			Map<Species, List<Genome>> staged) {
+		Genome geno = (Genome) result[0];
+		if (result[2] != null) {
+			throw new RuntimeException("There was an error calculating the fitness of a genome",
+					(Throwable) result[2]);
+		}
+		geno.fitness = (Double) result[1];
+		this.fitnesses.put(geno, geno.fitness);
+		this.putIntoSpecies(geno, candidates, staged);
+	}
+
+	private void startMetrics() {
+		this.currentMetrics = null;
+		if (!this.metricsListeners.isEmpty()) {
+			this.currentMetrics = new GenerationMetrics(this, this.currentGenerationFinished + 1);
+		}
+	}
+
+	private void finishPhase(GenerationPhase phase) {
+		if (this.currentMetrics == null) {
+			return;
+		}
+		this.currentMetrics.finishPhase(phase);
+		for (NEATMetricsListener listener : this.metricsListeners) {
+			listener.phaseFinished(this, phase, this.currentMetrics.getPhaseNanos(phase),
+					this.currentMetrics.getPhaseAllocatedBytes(phase));
+		}
+	}
+
+	private void finishMetrics() {
+		if (this.currentMetrics == null) {
+			return;
+		}
+		this.currentMetrics.finishGeneration(this);
+		for (NEATMetricsListener listener : this.metricsListeners) {
+			listener.generationFinished(this, this.currentMetrics);
+		}
+		this.currentMetrics = null;
 	}
 
 	public void assignNextGenerationFromSpecies() {
@@ -116,10 +273,13 @@ public class NEAT implements Iterable<Genome> {
 		for (Species spec : this.species) {
 			if (spec.size() > 0) {
 				Genome bestInSpec = spec.get(0);
+				bestInSpec.parentSpeciesID = spec.ID;
 				this.population.add(bestInSpec);
 			}
 		}
-		System.out.println("Copied " + this.population.size() + " champions from previous species.");
+		for (NEATMetricsListener listener : this.metricsListeners) {
+			listener.championsCopied(this, this.population.size());
+		}
 
 		int numOffspringNeeded = this.preferredPopulationSize - this.population.size();
 
@@ -154,11 +314,18 @@ public class NEAT implements Iterable<Genome> {
 			this.mutateGroup(speciesOffSpring);
 
 			this.population.addAll(speciesOffSpring);
+			if (this.offspringSink != null) {
+				speciesOffSpring.forEach(this.offspringSink);
+			}
 		}
 
 		// Fill rest of the population with brand new organisms
 		while (this.population.size() < this.preferredPopulationSize) {
-			this.population.add(this.trainer.generateRandom(this));
+			Genome geno = this.trainer.generateRandom(this);
+			this.population.add(geno);
+			if (this.offspringSink != null) {
+				this.offspringSink.accept(geno);
+			}
 		}
 	}
 
@@ -170,16 +337,24 @@ public class NEAT implements Iterable<Genome> {
 		// 75% of offspring are crosses
 		int crossAmount = (int) (this.neatStats.getPercentOffspringFromCrossover(this) * numOffspring);
 
+		// built once and reused for every draw from this species
+		FitnessSampler specSampler = this.samplerFor(spec, this.fitnesses);
+		FitnessSampler speciesSampler = null;
+
 		for (int i = 0; i < crossAmount; i++) {
-			Genome p1 = this.getWeightedRandom(spec, this.fitnesses);
+			Genome p1 = spec.get(specSampler.sample(this.akRandom));
 			p1 = spec.get((int) this.akRandom.nextRandomNumber(spec.size()));
 
 			Species secondParentSpec = spec;
 			// interspecies mating rate
 			if (this.akRandom.nextRandomChance(this.neatStats.getCrossoverInterspeciesProbability(this))) {
-				secondParentSpec = this.getWeightedRandom(this.species, avgFitnessInSpecies);
+				if (speciesSampler == null) {
+					speciesSampler = this.samplerFor(this.species, avgFitnessInSpecies);
+				}
+				secondParentSpec = this.species.get(speciesSampler.sample(this.akRandom));
 			}
-			Genome p2 = this.getWeightedRandom(secondParentSpec, this.fitnesses);
+			Genome p2 = secondParentSpec == spec ? spec.get(specSampler.sample(this.akRandom))
+					: this.getWeightedRandom(secondParentSpec, this.fitnesses);
 
 			p2 = spec.get((int) this.akRandom.nextRandomNumber(spec.size()));
 
@@ -190,15 +365,19 @@ public class NEAT implements Iterable<Genome> {
 			} else {
 				child = this.trainer.crossover(p2, p1, this);
 			}
+			child.parentSpeciesID = spec.ID;
 			offspring.add(child);
 		}
 
 		while (offspring.size() < numOffspring) {
-			Genome selected = this.getWeightedRandom(spec, this.fitnesses);
+			Genome selected = spec.get(specSampler.sample(this.akRandom));
 
 			// geno = spec.get((int) akRandom.nextRandomNumber(spec.size()));
 
+			// the clone shares the genes of selected until it writes them, so it can be mutated while selected or
+			// its siblings are being evaluated
 			Genome newGeno = new Genome(this.getNewGenomeID(), selected);
+			newGeno.parentSpeciesID = spec.ID;
 			offspring.add(newGeno);
 		}
 
@@ -206,40 +385,99 @@ public class NEAT implements Iterable<Genome> {
 	}
 
 	private <T> T getWeightedRandom(List<T> list, Map<T, Double> fitnesses) {
-		double totalWeight = 0.0;
-		for (T t : list) {
-			totalWeight += fitnesses.get(t);
-		}
-
-		double rand = this.akRandom.nextRandomNumber(totalWeight);
+		return list.get(this.samplerFor(list, fitnesses).sample(this.akRandom));
+	}
 
-		double currentWeight = 0.0;
-		for (T t : list) {
-			currentWeight += fitnesses.get(t);
-			if (currentWeight >= rand) {
-				return t;
-			}
+	private <T> FitnessSampler samplerFor(List<T> list, Map<T, Double> fitnesses) {
+		double[] weights = new double[list.size()];
+		for (int i = 0; i < weights.length; i++) {
+			weights[i] = fitnesses.get(list.get(i));
+		}
+		try {
+			return FitnessSampler.allowingNegative(weights);
+		} catch (IllegalArgumentException e) {
+			throw new RuntimeException("There was an error calculating the fitnesses (probably had NaN fitnesses)",
+					e);
 		}
-		throw new RuntimeException("There was an error calculating the fitnesses (probably had negative fitnesses)");
 	}
 
-	private void putIntoSpecies(Genome geno) {
-		for (Species spec : this.species) {
-			if (this.trainer.areSimilar(geno, spec.getRepresentative(), this)) {
-				// found it
-				spec.add(geno);
-				if (geno.fitness > spec.maxFit) {
-					spec.lastGenerationOfIncrease = this.currentGenerationFinished;
-					spec.maxFit = geno.fitness;
+	private Species putIntoSpecies(Genome geno) {
+		return this.putIntoSpecies(geno, this.species, null);
+	}
+
+	// candidates are searched in order and a new species is appended to them. when staged has a list for the
+	// species geno goes into, geno is added to that list instead of the species
+	private Species putIntoSpecies(Genome geno, List<Species> candidates, Map<Species, List<Genome>> staged) {
+		Species similarSpec = null;
+		if (this.neatStats.isFastSpeciation(this)) {
+			similarSpec = this.findSimilarSpeciesFast(geno, candidates);
+		} else {
+			for (Species spec : candidates) {
+				if (this.trainer.areSimilar(geno, spec.getRepresentative(), this)) {
+					similarSpec = spec;
+					break;
 				}
-				return;
 			}
 		}
+		if (similarSpec != null) {
+			// found it
+			List<Genome> stagedMembers = staged == null ? null : staged.get(similarSpec);
+			if (stagedMembers != null) {
+				stagedMembers.add(geno);
+			} else {
+				similarSpec.add(geno);
+			}
+			if (geno.fitness > similarSpec.maxFit) {
+				similarSpec.lastGenerationOfIncrease = this.currentGenerationFinished;
+				similarSpec.maxFit = geno.fitness;
+			}
+			return similarSpec;
+		}
 		Species newSpec = new Species(this.getNewSpeciesID(), geno, this);
 		newSpec.lastGenerationOfIncrease = this.currentGenerationFinished;
 		newSpec.maxFit = geno.fitness;
-		System.err.println("NEW SPECIES: " + newSpec.ID);
-		this.species.add(newSpec);
+		candidates.add(newSpec);
+		if (this.currentMetrics != null) {
+			this.currentMetrics.speciesBorn++;
+		}
+		for (NEATMetricsListener listener : this.metricsListeners) {
+			listener.speciesBorn(this, newSpec);
+		}
+		return newSpec;
+	}
+
+	private static final int PARALLEL_SPECIATION_THRESHOLD = 32;
+
+	// the species of the parent is usually the one the genome belongs to, so it is tried first. otherwise the
+	// representatives are compared in parallel and the first similar species in list order wins.
+	// distances aren't cached: a genome meets every representative at most once per generation and the
+	// representatives are drawn again every generation, so only a champion that is drawn as representative again
+	// would ever hit a cache
+	private Species findSimilarSpeciesFast(Genome geno, List<Species> candidates) {
+		if (geno.parentSpeciesID >= 0) {
+			for (Species spec : candidates) {
+				if (spec.ID == geno.parentSpeciesID) {
+					if (this.trainer.areSimilar(geno, spec.getRepresentative(), this)) {
+						return spec;
+					}
+					break;
+				}
+			}
+		}
+		if (candidates.size() < NEAT.PARALLEL_SPECIATION_THRESHOLD) {
+			for (Species spec : candidates) {
+				if (spec.ID != geno.parentSpeciesID && this.trainer.areSimilar(geno, spec.getRepresentative(), this)) {
+					return spec;
+				}
+			}
+			return null;
+		}
+		OptionalInt index = IntStream.range(0, candidates.size()).parallel().filter(i -> {
+			Species spec = candidates.get(i);
+			return spec.ID != geno.parentSpeciesID
+					&& NEAT.this.trainer.areSimilar(geno, spec.getRepresentative(), NEAT.this);
+		}).findFirst();
+		return index.isPresent() ? candidates.get(index.getAsInt()) : null;
 	}
 
 	private void putIntoSpecies(List<Genome> genos) {
@@ -254,14 +492,64 @@ public class NEAT implements Iterable<Genome> {
 	private void removeExtinctSpecies() {
 		this.species.removeIf(spec -> {
 			if (spec.isEmpty()) {
-				System.err.println("DEAD SPECIES: " + spec.ID);
+				if (this.currentMetrics != null) {
+					this.currentMetrics.speciesDied++;
+				}
+				for (NEATMetricsListener listener : this.metricsListeners) {
+					listener.speciesDied(this, spec);
+				}
 			}
 			return spec.isEmpty();
 		});
 	}
 
+	// replaces the least fit genomes with the already evaluated immigrants, which get new IDs of this NEAT
+	public void immigrate(List<Genome> immigrants) {
+		if (immigrants.isEmpty()) {
+			return;
+		}
+		List<Genome> worst = new ArrayList<>(this.population);
+		worst.sort((a, b) -> Double.compare(a.fitness, b.fitness));
+
+		for (int i = 0; i < immigrants.size() && i < worst.size(); i++) {
+			Genome geno = new Genome(this.getNewGenomeID(), immigrants.get(i));
+			geno.fitness = immigrants.get(i).fitness;
+			this.replaceGenome(worst.get(i), geno);
+		}
+	}
+
+	// swaps old for the already evaluated geno in the population, the species and the fitnesses.
+	// returns the species geno was put into, a species that is left empty is removed
+	Species replaceGenome(Genome old, Genome geno) {
+		for (Species spec : this.species) {
+			if (spec.remove(old)) {
+				break;
+			}
+		}
+		this.fitnesses.remove(old);
+
+		this.population.set(this.population.indexOf(old), geno);
+		this.fitnesses.put(geno, geno.fitness);
+		Species spec = this.putIntoSpecies(geno);
+		this.removeExtinctSpecies();
+		return spec;
+	}
+
+	// the generation bookkeeping of runGeneration for SteadyStateNEAT, which has no generations of its own
+	void advanceGeneration() {
+		for (Species spec : this.species) {
+			spec.assignNewRandomRepresentative();
+			spec.age++;
+		}
+		this.currentGenerationFinished++;
+		this.endInnovationGeneration();
+	}
+
 	private void calculateFitnesses(List<Genome> population) {
 		List<Double> fitnessesList = this.trainer.calculateFitness(population, this);
+		if (this.currentMetrics != null) {
+			this.currentMetrics.numEvaluated += population.size();
+		}
 
 		for (int i = 0; i < population.size(); i++) {
 			Genome geno = population.get(i);
@@ -284,10 +572,30 @@ public class NEAT implements Iterable<Genome> {
 		}
 	}
 
+	public NEATTrainer getTrainer() {
+		return this.trainer;
+	}
+
 	public void setTrainer(NEATTrainer trainer) {
 		this.trainer = trainer;
 	}
 
+	public FitnessEvaluator getFitnessEvaluator() {
+		return this.fitnessEvaluator;
+	}
+
+	public void setFitnessEvaluator(FitnessEvaluator fitnessEvaluator) {
+		this.fitnessEvaluator = fitnessEvaluator;
+	}
+
+	public void addMetricsListener(NEATMetricsListener listener) {
+		this.metricsListeners.add(listener);
+	}
+
+	public void removeMetricsListener(NEATMetricsListener listener) {
+		this.metricsListeners.remove(listener);
+	}
+
 	public int getPreferredPopulationSize() {
 		return this.preferredPopulationSize;
 	}
@@ -305,28 +613,49 @@ public class NEAT implements Iterable<Genome> {
 	}
 
 	public int currentInnovationNumber = 0;
-	private final HashMap<Tuple2D<Integer, Integer>, Integer> generationalInnovations = new HashMap<>();
+	private final InnovationRegistry innovationRegistry = new InnovationRegistry();
 
-	// public int samemutation = 0, uniquemutation = 0;
+	// islands that exchange genomes have to agree on innovation numbers, so they all draw them from one owner
+	private NEAT innovationOwner = null;
 
 	public int getInnovationNumberForConnectionMutation(int inputNodeID, int outputNodeID) {
-		for (Tuple2D<Integer, Integer> structure : this.generationalInnovations.keySet()) {
-			if (structure.getA() == inputNodeID && structure.getB() == outputNodeID) {
-//				System.out.println("found same mutation in generation!");
-//				samemutation++;
-//				System.out.println("distributed: " + this.generationalInnovations.get(structure));
-				// found structure already in generation
-				return this.generationalInnovations.get(structure);
+		if (this.innovationOwner != null) {
+			synchronized (this.innovationOwner) {
+				return this.innovationOwner.nextInnovationNumber(inputNodeID, outputNodeID);
 			}
 		}
-		int innov = this.currentInnovationNumber++;
+		return this.nextInnovationNumber(inputNodeID, outputNodeID);
+	}
 
-		this.generationalInnovations.put(new Tuple2D<>(inputNodeID, outputNodeID), innov);
-//		uniquemutation++;
-//		System.out.println("distributed: " + innov);
+	private int nextInnovationNumber(int inputNodeID, int outputNodeID) {
+		int innov = this.innovationRegistry.get(inputNodeID, outputNodeID);
+		if (innov < 0) {
+			innov = this.currentInnovationNumber++;
+			this.innovationRegistry.put(inputNodeID, outputNodeID, innov);
+		}
 		return innov;
 	}
 
+	public InnovationRegistry getInnovationRegistry() {
+		return this.innovationRegistry;
+	}
+
+	// makes this NEAT use the innovation numbers and registry of owner (which may be this NEAT itself), safe to
+	// use while both run on different threads
+	public void shareInnovationsWith(NEAT owner) {
+		this.innovationOwner = owner;
+	}
+
+	private void endInnovationGeneration() {
+		if (this.innovationOwner == null) {
+			this.innovationRegistry.endGeneration();
+		} else if (this.innovationOwner == this) {
+			synchronized (this) {
+				this.innovationRegistry.endGeneration();
+			}
+		}
+	}
+
 	private long currentGenomeID = 0;
 
 	public long getNewGenomeID() {
@@ -339,6 +668,29 @@ public class NEAT implements Iterable<Genome> {
 		return this.currentSpeciesID++;
 	}
 
+	long getCurrentGenomeID() {
+		return this.currentGenomeID;
+	}
+
+	long getCurrentSpeciesID() {
+		return this.currentSpeciesID;
+	}
+
+	// used by NEATCheckpoint to put a saved run back in place
+	void restore(List<Genome> population, List<Species> species, int currentGenerationFinished,
+			long currentGenomeID, long currentSpeciesID) {
+		this.population = population;
+		this.species.clear();
+		this.species.addAll(species);
+		this.fitnesses.clear();
+		for (Genome geno : population) {
+			this.fitnesses.put(geno, geno.fitness);
+		}
+		this.currentGenerationFinished = currentGenerationFinished;
+		this.currentGenomeID = currentGenomeID;
+		this.currentSpeciesID = currentSpeciesID;
+	}
+
 	public NEATStats getNeatStats() {
 		return this.neatStats;
 	}
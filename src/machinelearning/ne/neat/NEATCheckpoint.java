@@ -0,0 +1,403 @@
+package machinelearning.ne.neat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import machinelearning.ne.neat.genome.ActivationFunction;
+import machinelearning.ne.neat.genome.BaseTemplate;
+import machinelearning.ne.neat.genome.ConnectionGene;
+import machinelearning.ne.neat.genome.Genome;
+import math.AKRandom;
+
+// binary snapshot of a NEAT run: counters, NEATStats, innovation registry, population, species and the state
+// of neat.akRandom. a snapshot is taken between generations, only the writing happens in the background.
+// the random state is only saved when AKRandom is Serializable, otherwise a restored run continues with a
+// fresh random and won't be bit identical.
+public class NEATCheckpoint {
+
+	private static final int MAGIC = 0x4E454154; // "NEAT"
+	private static final int VERSION = 1;
+
+	private final ByteBuffer data;
+
+	private NEATCheckpoint(ByteBuffer data) {
+		this.data = data;
+	}
+
+	// encodes the current state of neat, call between generations
+	public static NEATCheckpoint snapshot(NEAT neat) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			NEATCheckpoint.write(neat, new DataOutputStream(bytes));
+			return new NEATCheckpoint(ByteBuffer.wrap(bytes.toByteArray()));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public static void save(NEAT neat, Path path) throws IOException {
+		NEATCheckpoint.snapshot(neat).writeTo(path);
+	}
+
+	// takes the snapshot on the calling thread and writes it on the executor, so the generation loop can go on
+	// as soon as this returns
+	public static CompletableFuture<Path> saveInBackground(NEAT neat, Path path, Executor executor) {
+		NEATCheckpoint checkpoint = NEATCheckpoint.snapshot(neat);
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				checkpoint.writeTo(path);
+				return path;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, executor);
+	}
+
+	public static CompletableFuture<Path> saveInBackground(NEAT neat, Path path) {
+		return NEATCheckpoint.saveInBackground(neat, path, ForkJoinPool.commonPool());
+	}
+
+	// writes to a temporary file first so a crash while writing never leaves a half written checkpoint
+	public void writeTo(Path path) throws IOException {
+		Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = this.data.duplicate();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(false);
+		}
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	public static NEATCheckpoint read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Checkpoint is too large: " + size + " bytes");
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					throw new IOException("Unexpected end of checkpoint " + path);
+				}
+			}
+			buffer.flip();
+			return new NEATCheckpoint(buffer);
+		}
+	}
+
+	public static NEAT restore(Path path, NEATTrainer trainer) throws IOException {
+		return NEATCheckpoint.read(path).restore(trainer, new NEATStats());
+	}
+
+	// neatStats receives the saved parameters, pass a subclass if the run used one
+	public NEAT restore(NEATTrainer trainer, NEATStats neatStats) throws IOException {
+		ByteBuffer in = this.data.duplicate();
+		if (in.getInt() != NEATCheckpoint.MAGIC) {
+			throw new IOException("Not a NEAT checkpoint");
+		}
+		int version = in.getInt();
+		if (version != NEATCheckpoint.VERSION) {
+			throw new IOException("Unsupported checkpoint version " + version);
+		}
+
+		int preferredPopulationSize = in.getInt();
+		int currentGenerationFinished = in.getInt();
+		int currentInnovationNumber = in.getInt();
+		long currentGenomeID = in.getLong();
+		long currentSpeciesID = in.getLong();
+
+		NEATCheckpoint.readStats(in, neatStats);
+
+		NEAT neat = new NEAT(preferredPopulationSize, trainer, neatStats);
+		neat.currentInnovationNumber = currentInnovationNumber;
+
+		InnovationRegistry registry = neat.getInnovationRegistry();
+		registry.setPersistent(in.get() != 0);
+		registry.setCounts(in.getLong(), in.getLong());
+		int registrySize = in.getInt();
+		for (int i = 0; i < registrySize; i++) {
+			long key = in.getLong();
+			registry.putKey(key, in.getInt());
+		}
+
+		int numGenes = in.getInt();
+		ConnectionGene[] genes = new ConnectionGene[numGenes];
+		for (int i = 0; i < numGenes; i++) {
+			int innovationNumber = in.getInt();
+			int inputNodeID = in.getInt();
+			int outputNodeID = in.getInt();
+			double connectionWeight = in.getDouble();
+			boolean enabled = in.get() != 0;
+			genes[i] = new ConnectionGene(innovationNumber, inputNodeID, outputNodeID, connectionWeight, enabled);
+		}
+
+		int numGenomes = in.getInt();
+		Genome[] genomes = new Genome[numGenomes];
+		for (int i = 0; i < numGenomes; i++) {
+			genomes[i] = NEATCheckpoint.readGenome(in, genes);
+		}
+
+		int populationSize = in.getInt();
+		List<Genome> population = null;
+		if (populationSize >= 0) {
+			population = new ArrayList<>(Math.max(populationSize, preferredPopulationSize));
+			for (int i = 0; i < populationSize; i++) {
+				population.add(genomes[in.getInt()]);
+			}
+		}
+
+		int numSpecies = in.getInt();
+		List<Species> species = new ArrayList<>(numSpecies);
+		for (int i = 0; i < numSpecies; i++) {
+			Species spec = new Species(in.getLong(), neat);
+			spec.age = in.getInt();
+			spec.lastGenerationOfIncrease = in.getInt();
+			spec.maxFit = in.getDouble();
+			int representative = in.getInt();
+			spec.setRepresentative(representative < 0 ? null : genomes[representative]);
+			int numMembers = in.getInt();
+			spec.ensureCapacity(numMembers);
+			for (int m = 0; m < numMembers; m++) {
+				spec.add(genomes[in.getInt()]);
+			}
+			species.add(spec);
+		}
+
+		int randomLength = in.getInt();
+		if (randomLength > 0) {
+			byte[] randomBytes = new byte[randomLength];
+			in.get(randomBytes);
+			try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(randomBytes))) {
+				neat.akRandom = (AKRandom) objectIn.readObject();
+			} catch (ClassNotFoundException e) {
+				throw new IOException("Could not restore the random state", e);
+			}
+		}
+
+		neat.restore(population, species, currentGenerationFinished, currentGenomeID,
+				currentSpeciesID);
+		return neat;
+	}
+
+	private static void write(NEAT neat, DataOutputStream out) throws IOException {
+		out.writeInt(NEATCheckpoint.MAGIC);
+		out.writeInt(NEATCheckpoint.VERSION);
+
+		out.writeInt(neat.getPreferredPopulationSize());
+		out.writeInt(neat.getCurrentGenerationFinished());
+		out.writeInt(neat.currentInnovationNumber);
+		out.writeLong(neat.getCurrentGenomeID());
+		out.writeLong(neat.getCurrentSpeciesID());
+
+		NEATCheckpoint.writeStats(neat.getNeatStats(), out);
+
+		InnovationRegistry registry = neat.getInnovationRegistry();
+		out.writeByte(registry.isPersistent() ? 1 : 0);
+		out.writeLong(registry.getHits());
+		out.writeLong(registry.getMisses());
+		long[] keys = new long[registry.size()];
+		int[] innovations = new int[registry.size()];
+		registry.export(keys, innovations);
+		out.writeInt(keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			out.writeLong(keys[i]);
+			out.writeInt(innovations[i]);
+		}
+
+		// every genome is written once, the population and the species refer to them by index. representatives
+		// are usually from the previous generation and not in the population anymore.
+		Map<Genome, Integer> indices = new IdentityHashMap<>();
+		List<Genome> genomes = new ArrayList<>();
+		List<Genome> population = neat.getPopulation();
+		if (population != null) {
+			for (Genome geno : population) {
+				NEATCheckpoint.index(geno, indices, genomes);
+			}
+		}
+		for (Species spec : neat.species) {
+			NEATCheckpoint.index(spec.getRepresentative(), indices, genomes);
+			for (Genome geno : spec) {
+				NEATCheckpoint.index(geno, indices, genomes);
+			}
+		}
+
+		// clones share ConnectionGene objects with their parent until one of them writes the gene, every shared
+		// gene is only written once
+		Map<ConnectionGene, Integer> geneIndices = new IdentityHashMap<>();
+		List<ConnectionGene> genes = new ArrayList<>();
+		for (Genome geno : genomes) {
+			for (ConnectionGene cg : geno) {
+				if (!geneIndices.containsKey(cg)) {
+					geneIndices.put(cg, genes.size());
+					genes.add(cg);
+				}
+			}
+		}
+		out.writeInt(genes.size());
+		for (ConnectionGene cg : genes) {
+			out.writeInt(cg.getInnovationNumber());
+			out.writeInt(cg.getInputNodeID());
+			out.writeInt(cg.getOutputNodeID());
+			out.writeDouble(cg.getConnectionWeight());
+			out.writeByte(cg.isEnabled() ? 1 : 0);
+		}
+
+		out.writeInt(genomes.size());
+		for (Genome geno : genomes) {
+			NEATCheckpoint.writeGenome(geno, geneIndices, out);
+		}
+
+		if (population == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(population.size());
+			for (Genome geno : population) {
+				out.writeInt(indices.get(geno));
+			}
+		}
+
+		out.writeInt(neat.species.size());
+		for (Species spec : neat.species) {
+			out.writeLong(spec.ID);
+			out.writeInt(spec.age);
+			out.writeInt(spec.lastGenerationOfIncrease);
+			out.writeDouble(spec.maxFit);
+			out.writeInt(spec.getRepresentative() == null ? -1 : indices.get(spec.getRepresentative()));
+			out.writeInt(spec.size());
+			for (Genome geno : spec) {
+				out.writeInt(indices.get(geno));
+			}
+		}
+
+		if (neat.akRandom instanceof Serializable) {
+			ByteArrayOutputStream randomBytes = new ByteArrayOutputStream();
+			try (ObjectOutputStream objectOut = new ObjectOutputStream(randomBytes)) {
+				objectOut.writeObject(neat.akRandom);
+			}
+			out.writeInt(randomBytes.size());
+			randomBytes.writeTo(out);
+		} else {
+			out.writeInt(0);
+		}
+		out.flush();
+	}
+
+	private static void index(Genome geno, Map<Genome, Integer> indices, List<Genome> genomes) {
+		if (geno != null && !indices.containsKey(geno)) {
+			indices.put(geno, genomes.size());
+			genomes.add(geno);
+		}
+	}
+
+	private static void writeGenome(Genome geno, Map<ConnectionGene, Integer> geneIndices, DataOutputStream out)
+			throws IOException {
+		BaseTemplate template = geno.getBaseTemplate();
+		out.writeLong(geno.ID);
+		out.writeByte(template.hasBias() ? 1 : 0);
+		out.writeInt(template.numInputNodes());
+		out.writeInt(template.numOutputNodes());
+		out.writeInt(geno.getNumHiddenNodes());
+		out.writeDouble(geno.fitness);
+		out.writeLong(geno.parentSpeciesID);
+		out.writeInt(geno.size());
+		for (ConnectionGene cg : geno) {
+			out.writeInt(geneIndices.get(cg));
+		}
+		int numNodeIDs = geno.hasActivationFunctions()
+				? template.numInputNodes() + template.numOutputNodes() + geno.getNumHiddenNodes() + 1
+				: 0;
+		out.writeInt(numNodeIDs);
+		for (int nodeID = 0; nodeID < numNodeIDs; nodeID++) {
+			out.writeByte(geno.getActivationFunction(nodeID).ordinal());
+		}
+	}
+
+	private static Genome readGenome(ByteBuffer in, ConnectionGene[] genes) {
+		long ID = in.getLong();
+		boolean hasBias = in.get() != 0;
+		int numInputNodes = in.getInt();
+		int numOutputNodes = in.getInt();
+		Genome geno = new Genome(ID, new BaseTemplate(hasBias, numInputNodes, numOutputNodes), in.getInt());
+		geno.fitness = in.getDouble();
+		geno.parentSpeciesID = in.getLong();
+		int numGenes = in.getInt();
+		geno.ensureCapacity(numGenes);
+		for (int i = 0; i < numGenes; i++) {
+			geno.addShared(genes[in.getInt()]);
+		}
+		int numNodeIDs = in.getInt();
+		for (int nodeID = 0; nodeID < numNodeIDs; nodeID++) {
+			geno.setActivationFunction(nodeID, ActivationFunction.of(in.get()));
+		}
+		return geno;
+	}
+
+	private static void writeStats(NEATStats stats, DataOutputStream out) throws IOException {
+		out.writeDouble(stats.c1);
+		out.writeDouble(stats.c2);
+		out.writeDouble(stats.c3);
+		out.writeDouble(stats.deltaThreshold);
+		out.writeByte(stats.fastSpeciation ? 1 : 0);
+		out.writeDouble(stats.percentPopulationToKill);
+		out.writeDouble(stats.percentOffspringFromCrossover);
+		out.writeDouble(stats.crossoverInterspeciesProbability);
+		out.writeDouble(stats.weightShiftStrengh);
+		out.writeDouble(stats.weightRandomizeStrengh);
+		out.writeDouble(stats.mutationProbability);
+		out.writeDouble(stats.alterAllWeightsProbability);
+		out.writeDouble(stats.weightRandomizeProbability);
+		out.writeDouble(stats.addConnectionProbability);
+		out.writeDouble(stats.addNodeProbability);
+		out.writeDouble(stats.toggleConnectionProbability);
+		out.writeByte(stats.recurrentAllowed ? 1 : 0);
+		out.writeDouble(stats.changeActivationFunctionProbability);
+	}
+
+	private static void readStats(ByteBuffer in, NEATStats stats) {
+		stats.c1 = in.getDouble();
+		stats.c2 = in.getDouble();
+		stats.c3 = in.getDouble();
+		stats.deltaThreshold = in.getDouble();
+		stats.fastSpeciation = in.get() != 0;
+		stats.percentPopulationToKill = in.getDouble();
+		stats.percentOffspringFromCrossover = in.getDouble();
+		stats.crossoverInterspeciesProbability = in.getDouble();
+		stats.weightShiftStrengh = in.getDouble();
+		stats.weightRandomizeStrengh = in.getDouble();
+		stats.mutationProbability = in.getDouble();
+		stats.alterAllWeightsProbability = in.getDouble();
+		stats.weightRandomizeProbability = in.getDouble();
+		stats.addConnectionProbability = in.getDouble();
+		stats.addNodeProbability = in.getDouble();
+		stats.toggleConnectionProbability = in.getDouble();
+		stats.recurrentAllowed = in.get() != 0;
+		stats.changeActivationFunctionProbability = in.getDouble();
+	}
+
+	public int sizeInBytes() {
+		return this.data.remaining();
+	}
+
+}
@@ -0,0 +1,61 @@
+package machinelearning.ne.neat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import machinelearning.geneticalgorithm.Island;
+import machinelearning.ne.neat.genome.Genome;
+
+public class NEATIsland implements Island<Genome> {
+
+	private final NEAT neat;
+
+	public NEATIsland(NEAT neat) {
+		this.neat = neat;
+	}
+
+	// one island per NEAT, all of them draw innovation numbers from the first one so migrants can be crossed over.
+	// the registry is made persistent because the islands don't end their generations at the same time.
+	public static List<NEATIsland> of(List<NEAT> neats) {
+		List<NEATIsland> islands = new ArrayList<>(neats.size());
+		NEAT owner = neats.get(0);
+		owner.getInnovationRegistry().setPersistent(true);
+		for (NEAT neat : neats) {
+			neat.shareInnovationsWith(owner);
+			islands.add(new NEATIsland(neat));
+		}
+		return islands;
+	}
+
+	@Override
+	public void runGeneration() {
+		this.neat.runGeneration();
+	}
+
+	@Override
+	public List<Genome> emigrants(int count) {
+		List<Genome> best = new ArrayList<>(this.neat.getPopulation());
+		best.sort((a, b) -> Double.compare(b.fitness, a.fitness));
+
+		List<Genome> emigrants = new ArrayList<>(count);
+		for (int i = 0; i < count && i < best.size(); i++) {
+			Genome geno = best.get(i);
+			// new Genome(ID, geno) writes geno's gene owner, which races with the thread of the island geno lives on.
+			// a deep copy only reads geno
+			Genome copy = geno.deepCopy(geno.ID);
+			copy.fitness = geno.fitness;
+			emigrants.add(copy);
+		}
+		return emigrants;
+	}
+
+	@Override
+	public void immigrate(List<Genome> immigrants) {
+		this.neat.immigrate(immigrants);
+	}
+
+	public NEAT getNEAT() {
+		return this.neat;
+	}
+
+}
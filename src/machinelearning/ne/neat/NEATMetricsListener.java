@@ -0,0 +1,21 @@
+package machinelearning.ne.neat;
+
+// receives instrumentation events from NEAT, every method is called on the thread running the generation
+public interface NEATMetricsListener {
+
+	public default void phaseFinished(NEAT neat, GenerationPhase phase, long nanos, long allocatedBytes) {
+	}
+
+	public default void championsCopied(NEAT neat, int numChampions) {
+	}
+
+	public default void speciesBorn(NEAT neat, Species spec) {
+	}
+
+	public default void speciesDied(NEAT neat, Species spec) {
+	}
+
+	public default void generationFinished(NEAT neat, GenerationMetrics metrics) {
+	}
+
+}
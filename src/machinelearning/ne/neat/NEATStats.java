@@ -7,6 +7,8 @@ public class NEATStats {
 	public double c2 = 1.0;
 	public double c3 = 0.4;
 	public double deltaThreshold = 3.0;
+	// try the species of the parent first and search the other representatives in parallel
+	public boolean fastSpeciation = false;
 
 	// general GA parameters
 	public double percentPopulationToKill = 0.5;
@@ -31,6 +33,11 @@ public class NEATStats {
 
 	public double toggleConnectionProbability = 0.0;
 
+	public double changeActivationFunctionProbability = 0.0;
+
+	// lets add connection mutations create cycles, evaluate such genomes with a RecurrentNetwork
+	public boolean recurrentAllowed = false;
+
 	public double getC1(NEAT neat) {
 		return this.c1;
 	}
@@ -47,6 +54,10 @@ public class NEATStats {
 		return this.deltaThreshold;
 	}
 
+	public boolean isFastSpeciation(NEAT neat) {
+		return this.fastSpeciation;
+	}
+
 	public double getPercentPopulationToKill(NEAT neat) {
 		return this.percentPopulationToKill;
 	}
@@ -91,4 +102,12 @@ public class NEATStats {
 		return this.toggleConnectionProbability;
 	}
 
+	public double getChangeActivationFunctionProbability(NEAT neat) {
+		return this.changeActivationFunctionProbability;
+	}
+
+	public boolean isRecurrentAllowed(NEAT neat) {
+		return this.recurrentAllowed;
+	}
+
 }
@@ -2,7 +2,9 @@ package machinelearning.ne.neat;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.SplittableRandom;
 
+import machinelearning.ne.neat.genome.ActivationFunction;
 import machinelearning.ne.neat.genome.BaseTemplate;
 import machinelearning.ne.neat.genome.ConnectionGene;
 import machinelearning.ne.neat.genome.Genome;
@@ -19,7 +21,17 @@ public interface NEATTrainer {
 
 	public abstract Genome generateRandomGenome(NEAT neat);
 
+	// called by a FitnessEvaluator that hands each genome its own random stream.
+	// override this when the fitness function is stochastic and should be reproducible
+	public default double calculateFitness(Genome geno, NEAT neat, SplittableRandom random) {
+		return this.calculateFitness(geno, neat);
+	}
+
 	public default List<Double> calculateFitness(List<Genome> genos, NEAT neat) {
+		FitnessEvaluator evaluator = neat.getFitnessEvaluator();
+		if (evaluator != null) {
+			return evaluator.calculateFitness(genos, neat, this);
+		}
 		List<Double> fitnesses = new ArrayList<>(genos.size());
 		for (int i = 0; i < genos.size(); i++) {
 			fitnesses.add(this.calculateFitness(genos.get(i), neat));
@@ -32,8 +44,8 @@ public interface NEATTrainer {
 
 		// 80% of the time mutate weights
 		if (neat.akRandom.nextRandomChance(stats.getAlterAllWeightsProbability(neat))) {
-			for (ConnectionGene cg : geno.getConnectionGenes()) {
-				NEATTrainer.mutateConnectionGene(cg, neat);
+			for (int i = 0; i < geno.size(); i++) {
+				NEATTrainer.mutateConnectionGene(geno.getGeneForWrite(i), neat);
 			}
 		}
 
@@ -50,27 +62,50 @@ public interface NEATTrainer {
 			this.mutateAddNode(geno, neat);
 			probablyMutatedStructure = true;
 		}
+		// only draws when enabled, so runs without activation mutations see the same random numbers as before
+		double changeActivationFunctionProbability = stats.getChangeActivationFunctionProbability(neat);
+		if (changeActivationFunctionProbability > 0
+				&& neat.akRandom.nextRandomChance(changeActivationFunctionProbability)) {
+			this.mutateActivationFunction(geno, neat);
+		}
+
 		if (probablyMutatedStructure) {
 			// need to cleanup because we don't know if the order of genes is correct or not
 			geno.cleanup();
 		}
 	}
 
+	// gives a random output or hidden node a random activation function
+	public default void mutateActivationFunction(Genome geno, NEAT neat) {
+		int firstNodeID = geno.getBaseTemplate().numInputNodes() + 1;
+		int numNodes = geno.getBaseTemplate().numOutputNodes() + geno.getNumHiddenNodes();
+		int nodeID = firstNodeID + (int) neat.akRandom.nextRandomNumber(numNodes);
+		geno.setActivationFunction(nodeID,
+				ActivationFunction.of((int) neat.akRandom.nextRandomNumber(ActivationFunction.count())));
+	}
+
 	public default boolean isValidConnection(int inputNodeID, int outputNodeID, Genome geno) {
-		if (inputNodeID == outputNodeID) {
+		return this.isValidConnection(inputNodeID, outputNodeID, geno, false);
+	}
+
+	// recurrent connections close a cycle: back to the node they come from, against an existing connection or
+	// over a longer path
+	public default boolean isValidConnection(int inputNodeID, int outputNodeID, Genome geno,
+			boolean isRecurrentAllowed) {
+		if (!isRecurrentAllowed && inputNodeID == outputNodeID) {
 			return false;
 		}
-		if (geno.hasConnection(inputNodeID, outputNodeID) || geno.hasConnection(outputNodeID, inputNodeID)) {
+		if (geno.hasConnection(inputNodeID, outputNodeID)
+				|| (!isRecurrentAllowed && geno.hasConnection(outputNodeID, inputNodeID))) {
 			return false;
 		}
-		int layer1 = geno.layerOf(inputNodeID), layer2 = geno.layerOf(outputNodeID);
-		boolean isRecurrentAllowed = false;
+		int layer2 = geno.layerOf(outputNodeID);
 
 		if (layer2 == 0) {
 			// input layer can't be output
 			return false;
 		}
-		if (!isRecurrentAllowed && layer2 < layer1) {
+		if (!isRecurrentAllowed && geno.wouldCreateCycle(inputNodeID, outputNodeID)) {
 			return false;
 		}
 
@@ -82,7 +117,10 @@ public interface NEATTrainer {
 		int outputNodeID = 0;
 
 		// try to get a unique new connection 100 times at most
-		for (int iterations = 0; !this.isValidConnection(inputNodeID, outputNodeID, geno); iterations++) {
+		// the 3 argument check stays in use for feed-forward runs so trainers that override it keep working
+		boolean isRecurrentAllowed = neat.getNeatStats().isRecurrentAllowed(neat);
+		for (int iterations = 0; !(isRecurrentAllowed ? this.isValidConnection(inputNodeID, outputNodeID, geno, true)
+				: this.isValidConnection(inputNodeID, outputNodeID, geno)); iterations++) {
 
 			if (neat.akRandom.nextRandomChance(0.00) && geno.getBaseTemplate().hasBias()) {
 				inputNodeID = 0;
@@ -92,7 +130,16 @@ public interface NEATTrainer {
 
 			outputNodeID = (int) neat.akRandom.nextRandomNumber(geno.getNumTotalNodes());
 			if (iterations > 100) {
-				return; // could not find new connection
+				// the genome is nearly saturated, pick from the pairs that are still free instead
+				long key = geno.sampleUnusedConnection(isRecurrentAllowed
+						? (in, out) -> this.isValidConnection(in, out, geno, true)
+						: (in, out) -> this.isValidConnection(in, out, geno), neat.akRandom);
+				if (key == -1) {
+					return; // could not find new connection
+				}
+				inputNodeID = (int) (key >>> 32);
+				outputNodeID = (int) key;
+				break;
 			}
 		}
 		// now we found a connection
@@ -108,16 +155,18 @@ public interface NEATTrainer {
 
 	public default void mutateAddNode(Genome geno, NEAT neat) {
 		ConnectionGene toSplitCg = null;
+		int toSplit = -1;
 
 		for (int iterations = 0; toSplitCg == null || !toSplitCg.isEnabled(); iterations++) {
-			toSplitCg = geno.getConnectionGenes()
-					.get((int) neat.akRandom.nextRandomNumber(geno.getConnectionGenes().size()));
+			toSplit = (int) neat.akRandom.nextRandomNumber(geno.getConnectionGenes().size());
+			toSplitCg = geno.getConnectionGenes().get(toSplit);
 
 			if (iterations > 100) {
 				return;
 			}
 		}
 
+		toSplitCg = geno.getGeneForWrite(toSplit);
 		toSplitCg.setEnabled(false); // disable it
 
 		int inputNodeID = toSplitCg.getInputNodeID(), outputNodeID = toSplitCg.getOutputNodeID();
@@ -168,53 +217,8 @@ public interface NEATTrainer {
 				Math.max(a.getNumHiddenNodes(), b.getNumHiddenNodes()));
 
 		// assume a is more fit
-
-		int i1 = 0;
-		int i2 = 0;
-		// List<Gene> childGenes = new ArrayList<>();
-		while (i1 < a.getConnectionGenes().size() || i2 < b.getConnectionGenes().size()) {
-			if (i1 >= a.getConnectionGenes().size()) {
-				// dont inherit from unfit parent
-				// child.getConnectionGenes().add(b.getConnectionGenes().get(i2).clone());
-				i2++;
-				continue;
-			}
-			if (i2 >= b.getConnectionGenes().size()) {
-				child.getConnectionGenes().add(a.getConnectionGenes().get(i1).clone());
-				i1++;
-				continue;
-			}
-			ConnectionGene g1 = a.getConnectionGenes().get(i1);
-			ConnectionGene g2 = b.getConnectionGenes().get(i2);
-			// matching genes
-			if (g1.getInnovationNumber() == g2.getInnovationNumber()) {
-				// pick random parent for weight
-				ConnectionGene g = neat.akRandom.nextRandomChance(0.5) ? g1.clone() : g2.clone();
-
-				if (g1.isEnabled() && g2.isEnabled()) {
-					g.setEnabled(true);
-				} else if (g1.isEnabled() || g2.isEnabled()) {
-					// g is disabled if one of parents are disabled and 75% chance is met.
-					g.setEnabled(neat.akRandom.nextRandomChance(.25));
-				} else {
-					g.setEnabled(false);
-				}
-
-				child.getConnectionGenes().add(g);
-				i1++;
-				i2++;
-			} else if (g1.getInnovationNumber() < g2.getInnovationNumber()) {
-				// g1 is disjoint
-				child.getConnectionGenes().add(g1.clone());
-				i1++;
-			} else {
-				// g2 is disjoint
-				// dont inherit from unfit parent
-				// child.getConnectionGenes().add(g2.clone());
-				i2++;
-			}
-		}
-		child.cleanup();
+		child.inheritGenes(a, b, neat.akRandom);
+		child.inheritActivationFunctions(a, b);
 		return child;
 	}
 
@@ -230,35 +234,71 @@ public interface NEATTrainer {
 	}
 
 	public default boolean areSimilar(Genome a, Genome b, NEAT neat) {
-		return NEATTrainer.similarity(a, b, neat.getNeatStats().getC1(neat), neat.getNeatStats().getC2(neat),
-				neat.getNeatStats().getC3(neat)) <= neat.getNeatStats().getDeltaThreshold(neat);
+		return !NEATTrainer.exceedsSimilarity(a, b, neat.getNeatStats().getC1(neat), neat.getNeatStats().getC2(neat),
+				neat.getNeatStats().getC3(neat), neat.getNeatStats().getDeltaThreshold(neat));
 	}
 
-	public static double similarity(Genome a, Genome b, double c1, double c2, double c3) {
-		int N = Math.max(a.getConnectionGenes().size(), b.getConnectionGenes().size());
+	// same result as !(similarity(a, b, c1, c2, c3) <= threshold), but stops walking the genes as soon as the
+	// excess and disjoint part of the distance alone is over the threshold
+	public static boolean exceedsSimilarity(Genome a, Genome b, double c1, double c2, double c3, double threshold) {
+		int size1 = a.getConnectionGenes().size(), size2 = b.getConnectionGenes().size();
+		int N = Math.max(size1, size2);
 		if (N < 20) {
 			N = 1;
 		}
 
-		int numExcess = 0;
 		int numDisjoint = 0;
-		double avgWeightDiff = 0;
+		double sumWeightDiff = 0;
 		int numCommonGenes = 0;
 
 		int i1 = 0;
 		int i2 = 0;
-		// List<Gene> childGenes = new ArrayList<>();
-		while (i1 < a.getConnectionGenes().size() || i2 < b.getConnectionGenes().size()) {
-			if (i1 >= a.getConnectionGenes().size()) {
-				numExcess++;
+		while (i1 < size1 && i2 < size2) {
+			ConnectionGene g1 = a.getConnectionGenes().get(i1);
+			ConnectionGene g2 = b.getConnectionGenes().get(i2);
+			if (g1.getInnovationNumber() == g2.getInnovationNumber()) {
+				numCommonGenes++;
+				sumWeightDiff += Math.abs(g1.getConnectionWeight() - g2.getConnectionWeight());
+				i1++;
 				i2++;
 				continue;
-			}
-			if (i2 >= b.getConnectionGenes().size()) {
-				numExcess++;
+			} else if (g1.getInnovationNumber() < g2.getInnovationNumber()) {
 				i1++;
-				continue;
+			} else {
+				i2++;
+			}
+			numDisjoint++;
+			// the weight term is never negative, so the distance can only end up larger than this
+			if (c2 * numDisjoint / N > threshold) {
+				return true;
 			}
+		}
+		int numExcess = size1 - i1 + size2 - i2;
+
+		double similarity = 0;
+
+		similarity += c1 * numExcess / N;
+		similarity += c2 * numDisjoint / N;
+		similarity += c3 * (sumWeightDiff / numCommonGenes);
+
+		return !(similarity <= threshold);
+	}
+
+	public static double similarity(Genome a, Genome b, double c1, double c2, double c3) {
+		int size1 = a.getConnectionGenes().size(), size2 = b.getConnectionGenes().size();
+		int N = Math.max(size1, size2);
+		if (N < 20) {
+			N = 1;
+		}
+
+		int numExcess = 0;
+		int numDisjoint = 0;
+		double avgWeightDiff = 0;
+		int numCommonGenes = 0;
+
+		int i1 = 0;
+		int i2 = 0;
+		while (i1 < size1 && i2 < size2) {
 			ConnectionGene g1 = a.getConnectionGenes().get(i1);
 			ConnectionGene g2 = b.getConnectionGenes().get(i2);
 			if (g1.getInnovationNumber() == g2.getInnovationNumber()) {
@@ -277,6 +317,7 @@ public interface NEATTrainer {
 				i2++;
 			}
 		}
+		numExcess += size1 - i1 + size2 - i2;
 		avgWeightDiff /= numCommonGenes;
 
 		double similarity = 0;
@@ -0,0 +1,103 @@
+package machinelearning.ne.neat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import machinelearning.ne.neat.genome.Genome;
+
+// evaluates the genomes of a generation concurrently on an ExecutorService.
+// every genome gets its own SplittableRandom seeded from (seed, generation, population index)
+// rather than from the thread it runs on, so fitnesses don't depend on scheduling.
+public class ParallelFitnessEvaluator implements FitnessEvaluator {
+
+	private final ExecutorService executor;
+
+	private final boolean ownsExecutor;
+
+	private final long seed;
+
+	public ParallelFitnessEvaluator(ExecutorService executor, long seed) {
+		this(executor, false, seed);
+	}
+
+	private ParallelFitnessEvaluator(ExecutorService executor, boolean ownsExecutor, long seed) {
+		this.executor = executor;
+		this.ownsExecutor = ownsExecutor;
+		this.seed = seed;
+	}
+
+	public static ParallelFitnessEvaluator forkJoin(long seed) {
+		return new ParallelFitnessEvaluator(ForkJoinPool.commonPool(), false, seed);
+	}
+
+	public static ParallelFitnessEvaluator fixedPool(int numThreads, long seed) {
+		return new ParallelFitnessEvaluator(Executors.newFixedThreadPool(numThreads, runnable -> {
+			Thread thread = new Thread(runnable, "neat-fitness");
+			thread.setDaemon(true);
+			return thread;
+		}), true, seed);
+	}
+
+	// virtual threads only exist on java 21+, so look them up reflectively
+	public static ParallelFitnessEvaluator virtualThreads(long seed) {
+		try {
+			ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+					.invoke(null);
+			return new ParallelFitnessEvaluator(executor, true, seed);
+		} catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Virtual threads are not supported by this JVM", e);
+		}
+	}
+
+	@Override
+	public List<Double> calculateFitness(List<Genome> genos, NEAT neat, NEATTrainer trainer) {
+		int generation = neat.getCurrentGenerationFinished() + 1;
+
+		List<Callable<Double>> tasks = new ArrayList<>(genos.size());
+		for (int i = 0; i < genos.size(); i++) {
+			final Genome geno = genos.get(i);
+			final SplittableRandom random = this.randomFor(generation, i);
+			tasks.add(() -> trainer.calculateFitness(geno, neat, random));
+		}
+
+		List<Double> fitnesses = new ArrayList<>(genos.size());
+		try {
+			// invokeAll returns the futures in the same order as the tasks
+			for (Future<Double> future : this.executor.invokeAll(tasks)) {
+				fitnesses.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while calculating fitnesses", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("There was an error calculating the fitness of a genome", e.getCause());
+		}
+		return fitnesses;
+	}
+
+	public SplittableRandom randomFor(int generation, int populationIndex) {
+		long mixed = this.seed;
+		mixed = mixed * 0x9E3779B97F4A7C15L + generation;
+		mixed = mixed * 0x9E3779B97F4A7C15L + populationIndex;
+		return new SplittableRandom(mixed);
+	}
+
+	public long getSeed() {
+		return this.seed;
+	}
+
+	// only shuts down executors created by the factory methods
+	public void shutdown() {
+		if (this.ownsExecutor) {
+			this.executor.shutdown();
+		}
+	}
+
+}
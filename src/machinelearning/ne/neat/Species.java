@@ -127,7 +127,7 @@ public class Species extends ArrayList<Genome> {
 			// and the lowest as the argument
 			baby = trainer.crossover(parent1, parent2, neat);
 		}
-		baby.cleanup();
+		// crossover children and clones are already sorted, NEATTrainer.mutate cleans up after structural mutations
 		return baby;
 	}
 
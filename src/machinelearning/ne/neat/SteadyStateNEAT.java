@@ -0,0 +1,186 @@
+package machinelearning.ne.neat;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+
+import machinelearning.geneticalgorithm.FitnessSampler;
+import machinelearning.ne.neat.genome.Genome;
+
+// rtNEAT style evolution without generations. up to maxInFlight offspring are evaluated at any time and as soon
+// as one of them is done it replaces the genome with the worst adjusted fitness (fitness / species size) and
+// a new offspring is bred and sent off, so the evaluators never wait for the slowest genome of a generation.
+// the species fitness sums are updated with every replacement instead of being recalculated.
+// all the NEAT bookkeeping happens on the thread that calls run(), only the evaluations run elsewhere.
+public class SteadyStateNEAT {
+
+	private final NEAT neat;
+
+	// starts the evaluation of a genome, the genome is not touched again until the future completes
+	private final Function<Genome, CompletableFuture<Double>> evaluator;
+
+	private final int maxInFlight;
+
+	private final BlockingQueue<Evaluated> completed = new LinkedBlockingQueue<>();
+	private int inFlight = 0;
+
+	// sum of the fitnesses of every species, the average fitness is the sum / size
+	private final Map<Species, Double> fitnessSums = new HashMap<>();
+
+	private long replacements = 0;
+
+	public SteadyStateNEAT(NEAT neat, Function<Genome, CompletableFuture<Double>> evaluator, int maxInFlight) {
+		this.neat = neat;
+		this.evaluator = evaluator;
+		this.maxInFlight = maxInFlight;
+	}
+
+	// evaluates with NEATTrainer.calculateFitness(Genome, NEAT) on the executor
+	public static SteadyStateNEAT onExecutor(NEAT neat, NEATTrainer trainer, Executor executor, int maxInFlight) {
+		return new SteadyStateNEAT(neat,
+				geno -> CompletableFuture.supplyAsync(() -> trainer.calculateFitness(geno, neat), executor),
+				maxInFlight);
+	}
+
+	// blocks until numReplacements offspring have been evaluated and put into the population
+	public void run(int numReplacements) {
+		if (this.neat.getPopulation() == null || this.neat.getPopulation().isEmpty()) {
+			this.neat.initialize();
+		}
+		this.recalculateFitnessSums();
+
+		int replaced = 0;
+		while (this.inFlight < this.maxInFlight && this.inFlight < numReplacements) {
+			this.evaluate(this.breed());
+		}
+		while (replaced < numReplacements) {
+			Evaluated evaluated;
+			try {
+				evaluated = this.completed.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while waiting for an evaluation", e);
+			}
+			this.inFlight--;
+			if (evaluated.error != null) {
+				throw new RuntimeException("There was an error calculating the fitness of a genome", evaluated.error);
+			}
+			// a NaN genome would never be the worst and would turn its species' fitness sum into NaN, which
+			// stops the species from breeding for good
+			if (Double.isNaN(evaluated.fitness)) {
+				throw new RuntimeException("There was an error calculating the fitness of a genome (NaN fitness)");
+			}
+
+			evaluated.geno.fitness = evaluated.fitness;
+			this.replaceWorst(evaluated.geno);
+			replaced++;
+
+			if (++this.replacements % this.neat.getPreferredPopulationSize() == 0) {
+				this.neat.advanceGeneration();
+			}
+			if (replaced + this.inFlight < numReplacements) {
+				this.evaluate(this.breed());
+			}
+		}
+	}
+
+	private void evaluate(Genome geno) {
+		this.inFlight++;
+		this.evaluator.apply(geno).whenComplete((fitness, error) -> {
+			this.completed.add(new Evaluated(geno, fitness == null ? Double.NaN : fitness, error));
+		});
+	}
+
+	private void replaceWorst(Genome geno) {
+		Species worstSpec = null;
+		Genome worst = null;
+		double worstAdjustedFitness = Double.POSITIVE_INFINITY;
+		for (Species spec : this.neat.species) {
+			for (Genome member : spec) {
+				double adjustedFitness = member.fitness / spec.size();
+				if (adjustedFitness < worstAdjustedFitness) {
+					worstAdjustedFitness = adjustedFitness;
+					worst = member;
+					worstSpec = spec;
+				}
+			}
+		}
+
+		Species spec = this.neat.replaceGenome(worst, geno);
+
+		if (worstSpec.isEmpty()) {
+			this.fitnessSums.remove(worstSpec);
+		} else {
+			this.fitnessSums.merge(worstSpec, -worst.fitness, Double::sum);
+		}
+		this.fitnessSums.merge(spec, geno.fitness, Double::sum);
+	}
+
+	// parents are picked from a species chosen by average fitness, like the generational offspring split
+	private Genome breed() {
+		List<Species> species = this.neat.species;
+		double[] averageFitness = new double[species.size()];
+		for (int i = 0; i < averageFitness.length; i++) {
+			averageFitness[i] = this.fitnessSums.get(species.get(i)) / species.get(i).size();
+		}
+		Species spec = species.get(FitnessSampler.shifted(averageFitness, averageFitness.length)
+				.sample(this.neat.akRandom));
+
+		NEATTrainer trainer = this.neat.getTrainer();
+		NEATStats stats = this.neat.getNeatStats();
+		Genome child;
+		if (this.neat.akRandom.nextRandomChance(stats.getPercentOffspringFromCrossover(this.neat))) {
+			Genome p1 = spec.selectGenome(), p2 = spec.selectGenome();
+			child = p1.fitness >= p2.fitness ? trainer.crossover(p1, p2, this.neat)
+					: trainer.crossover(p2, p1, this.neat);
+		} else {
+			// the parent may be read while the child is mutated, the child copies every gene it writes
+			child = new Genome(this.neat.getNewGenomeID(), spec.selectGenome());
+		}
+		if (this.neat.akRandom.nextRandomChance(stats.getMutationProbability(this.neat))) {
+			trainer.mutate(child, this.neat);
+		}
+		child.parentSpeciesID = spec.ID;
+		return child;
+	}
+
+	private void recalculateFitnessSums() {
+		this.fitnessSums.clear();
+		for (Species spec : this.neat.species) {
+			double sum = 0;
+			for (Genome geno : spec) {
+				if (Double.isNaN(geno.fitness)) {
+					throw new RuntimeException("There was an error calculating the fitnesses (probably had NaN fitnesses)");
+				}
+				sum += geno.fitness;
+			}
+			this.fitnessSums.put(spec, sum);
+		}
+	}
+
+	public long getReplacements() {
+		return this.replacements;
+	}
+
+	public NEAT getNEAT() {
+		return this.neat;
+	}
+
+	private static class Evaluated {
+		final Genome geno;
+		final double fitness;
+		final Throwable error;
+
+		Evaluated(Genome geno, double fitness, Throwable error) {
+			this.geno = geno;
+			this.fitness = fitness;
+			this.error = error;
+		}
+	}
+
+}
@@ -0,0 +1,100 @@
+package machinelearning.ne.neat.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+// minimal timing harness: runs an operation for a number of warmup and measured iterations and reports the
+// average time and the bytes allocated by the calling thread per operation
+public class BenchmarkRunner {
+
+	private final int warmupIterations;
+	private final int measureIterations;
+	private final long iterationNanos;
+
+	private final ThreadMXBean threadBean;
+	private final boolean allocationSupported;
+
+	// the operations feed their results in here like JMH's Blackhole, so the JIT can't drop the work behind them
+	private volatile long sink;
+
+	public BenchmarkRunner(int warmupIterations, int measureIterations, long iterationMillis) {
+		this.warmupIterations = warmupIterations;
+		this.measureIterations = measureIterations;
+		this.iterationNanos = iterationMillis * 1_000_000L;
+
+		this.threadBean = ManagementFactory.getThreadMXBean();
+		this.allocationSupported = this.threadBean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) this.threadBean).isThreadAllocatedMemorySupported();
+		if (this.allocationSupported) {
+			((com.sun.management.ThreadMXBean) this.threadBean).setThreadAllocatedMemoryEnabled(true);
+		}
+	}
+
+	public Result run(String name, String params, Runnable operation) {
+		for (int i = 0; i < this.warmupIterations; i++) {
+			this.runIteration(operation);
+		}
+		long totalOps = 0, totalNanos = 0, totalBytes = 0;
+		for (int i = 0; i < this.measureIterations; i++) {
+			long[] iteration = this.runIteration(operation);
+			totalOps += iteration[0];
+			totalNanos += iteration[1];
+			totalBytes += iteration[2];
+		}
+		Result result = new Result(name, params, (double) totalNanos / totalOps,
+				this.allocationSupported ? (double) totalBytes / totalOps : Double.NaN);
+		System.out.println(result);
+		return result;
+	}
+
+	public void consume(double value) {
+		this.sink += Double.doubleToRawLongBits(value);
+	}
+
+	public void consume(long value) {
+		this.sink += value;
+	}
+
+	// returns {operations, nanos, bytes allocated}
+	private long[] runIteration(Runnable operation) {
+		long ops = 0;
+		long startBytes = this.allocatedBytes();
+		long start = System.nanoTime();
+		long now = start;
+		while (now - start < this.iterationNanos) {
+			operation.run();
+			ops++;
+			now = System.nanoTime();
+		}
+		long bytes = this.allocatedBytes() - startBytes;
+		return new long[] { ops, now - start, bytes };
+	}
+
+	private long allocatedBytes() {
+		if (!this.allocationSupported) {
+			return 0;
+		}
+		return ((com.sun.management.ThreadMXBean) this.threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	public static class Result {
+		public final String name;
+		public final String params;
+		public final double nanosPerOp;
+		public final double bytesPerOp;
+
+		public Result(String name, String params, double nanosPerOp, double bytesPerOp) {
+			this.name = name;
+			this.params = params;
+			this.nanosPerOp = nanosPerOp;
+			this.bytesPerOp = bytesPerOp;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-28s %-28s %,16.1f ns/op %,16.1f B/op", this.name, this.params, this.nanosPerOp,
+					this.bytesPerOp);
+		}
+	}
+
+}
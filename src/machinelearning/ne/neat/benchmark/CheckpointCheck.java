@@ -0,0 +1,77 @@
+package machinelearning.ne.neat.benchmark;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+
+import machinelearning.ne.neat.NEAT;
+import machinelearning.ne.neat.NEATCheckpoint;
+import machinelearning.ne.neat.NEATStats;
+import machinelearning.ne.neat.NEATTrainer;
+
+// checks that a restored NEAT run writes the checkpoint it was restored from and, when AKRandom is Serializable,
+// keeps producing the same checkpoints as the run that was saved. exits with 1 on a mismatch.
+// usage: CheckpointCheck [populationSize] [generations]
+public class CheckpointCheck {
+
+	public static void main(String... args) throws IOException, InterruptedException, ExecutionException {
+		int populationSize = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int generations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		NEATTrainer trainer = new EvolutionBenchmarks.BenchmarkTrainer(40);
+		NEATStats stats = new NEATStats();
+		stats.addNodeProbability = 0.05;
+		stats.toggleConnectionProbability = 0.05;
+		NEAT neat = new NEAT(populationSize, trainer, stats);
+		neat.initialize();
+		for (int i = 0; i < 3; i++) {
+			neat.runGeneration();
+		}
+
+		Path saved = Files.createTempFile("neat", ".checkpoint");
+		Path resaved = Files.createTempFile("neat", ".checkpoint");
+		try {
+			NEATCheckpoint.saveInBackground(neat, saved).get();
+			NEAT restored = NEATCheckpoint.restore(saved, trainer);
+			NEATCheckpoint.save(restored, resaved);
+			boolean ok = CheckpointCheck.compare("restored", saved, resaved);
+
+			if (neat.akRandom instanceof Serializable) {
+				for (int i = 0; i < generations; i++) {
+					neat.runGeneration();
+					restored.runGeneration();
+					NEATCheckpoint.save(neat, saved);
+					NEATCheckpoint.save(restored, resaved);
+					ok &= CheckpointCheck.compare("generation " + (i + 1), saved, resaved);
+				}
+			} else {
+				System.out.println("AKRandom is not Serializable, the continued runs are not compared");
+			}
+
+			System.out.println(ok ? "OK" : "FAILED");
+			if (!ok) {
+				System.exit(1);
+			}
+		} finally {
+			Files.deleteIfExists(saved);
+			Files.deleteIfExists(resaved);
+		}
+	}
+
+	private static boolean compare(String what, Path expected, Path actual) throws IOException {
+		byte[] a = Files.readAllBytes(expected), b = Files.readAllBytes(actual);
+		int firstDifference = a.length == b.length ? -1 : Math.min(a.length, b.length);
+		for (int i = 0; i < Math.min(a.length, b.length); i++) {
+			if (a[i] != b[i]) {
+				firstDifference = i;
+				break;
+			}
+		}
+		System.out.printf("%-14s %,d bytes, %s%n", what, a.length,
+				firstDifference < 0 ? "identical" : "first difference at byte " + firstDifference);
+		return firstDifference < 0;
+	}
+
+}
@@ -0,0 +1,91 @@
+package machinelearning.ne.neat.benchmark;
+
+import machinelearning.ne.neat.CompactGenomeOperators;
+import machinelearning.ne.neat.NEAT;
+import machinelearning.ne.neat.NEATStats;
+import machinelearning.ne.neat.genome.CompactGenome;
+import machinelearning.ne.neat.genome.CompactGenomeArena;
+import machinelearning.ne.neat.genome.Genome;
+
+// a generational loop over CompactGenomes, once with the offspring on the heap and once in a CompactGenomeArena,
+// to show the allocation per generation that the arena saves.
+// usage: CompactGenerationBenchmark [populationSize] [genesPerGenome]
+public class CompactGenerationBenchmark {
+
+	public static void main(String... args) {
+		int populationSize = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int genesPerGenome = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		String params = "population=" + populationSize + " genes=" + genesPerGenome;
+		BenchmarkRunner runner = new BenchmarkRunner(3, 5, 500);
+
+		for (boolean useArena : new boolean[] { false, true }) {
+			NEAT neat = new NEAT(populationSize, new EvolutionBenchmarks.BenchmarkTrainer(genesPerGenome),
+					new NEATStats());
+			neat.initialize();
+			CompactGenomeArena arena = useArena ? new CompactGenomeArena() : null;
+			CompactGenome[][] generations = new CompactGenome[2][populationSize];
+			for (int i = 0; i < populationSize; i++) {
+				Genome geno = neat.getPopulation().get(i);
+				generations[0][i] = CompactGenome.fromGenome(geno);
+				generations[0][i].fitness = CompactGenerationBenchmark.fitness(generations[0][i]);
+			}
+			int[] current = new int[1];
+			runner.run(useArena ? "CompactGenome arena" : "CompactGenome heap", params, () -> {
+				CompactGenome[] parents = generations[current[0]], offspring = generations[1 - current[0]];
+				CompactGenerationBenchmark.nextGeneration(parents, offspring, neat, arena);
+				current[0] = 1 - current[0];
+				runner.consume(offspring[0].size());
+			});
+			if (arena != null) {
+				System.out.printf("arena: %,d buffers allocated, %,d recycled%n", arena.getNumAllocatedBuffers(),
+						arena.getNumRecycledBuffers());
+			}
+		}
+	}
+
+	// the best parent is carried over, every other slot gets a mutated child of two tournament winners.
+	// with an arena the children reuse the arrays of the generation before the parents, without one they allocate
+	static void nextGeneration(CompactGenome[] parents, CompactGenome[] offspring, NEAT neat,
+			CompactGenomeArena arena) {
+		if (arena != null) {
+			arena.nextGeneration();
+		}
+		CompactGenome best = parents[0];
+		for (CompactGenome geno : parents) {
+			if (geno.fitness > best.fitness) {
+				best = geno;
+			}
+		}
+		offspring[0] = arena != null ? arena.copy(neat.getNewGenomeID(), best)
+				: new CompactGenome(neat.getNewGenomeID(), best);
+		offspring[0].fitness = best.fitness;
+		for (int i = 1; i < offspring.length; i++) {
+			CompactGenome a = CompactGenerationBenchmark.tournament(parents, neat);
+			CompactGenome b = CompactGenerationBenchmark.tournament(parents, neat);
+			CompactGenome child = a.fitness >= b.fitness ? CompactGenomeOperators.crossover(a, b, neat, arena)
+					: CompactGenomeOperators.crossover(b, a, neat, arena);
+			CompactGenomeOperators.mutate(child, neat);
+			child.fitness = CompactGenerationBenchmark.fitness(child);
+			offspring[i] = child;
+		}
+	}
+
+	private static CompactGenome tournament(CompactGenome[] population, NEAT neat) {
+		CompactGenome a = population[(int) neat.akRandom.nextRandomNumber(population.length)];
+		CompactGenome b = population[(int) neat.akRandom.nextRandomNumber(population.length)];
+		return a.fitness >= b.fitness ? a : b;
+	}
+
+	// pulls the enabled weights towards 0.5
+	private static double fitness(CompactGenome geno) {
+		double fitness = 0;
+		for (int i = 0; i < geno.size(); i++) {
+			if (geno.isEnabled(i)) {
+				double d = geno.getConnectionWeight(i) - 0.5;
+				fitness -= d * d;
+			}
+		}
+		return fitness;
+	}
+
+}
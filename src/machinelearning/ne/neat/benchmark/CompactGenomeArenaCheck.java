@@ -0,0 +1,86 @@
+package machinelearning.ne.neat.benchmark;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import machinelearning.ne.neat.NEAT;
+import machinelearning.ne.neat.NEATCheckpoint;
+import machinelearning.ne.neat.NEATStats;
+import machinelearning.ne.neat.genome.CompactGenome;
+import machinelearning.ne.neat.genome.CompactGenomeArena;
+
+// runs the generation loop of CompactGenerationBenchmark in a CompactGenomeArena next to the same loop on the heap and
+// checks every generation that the arena offspring have the genes of the heap offspring, so recycled arrays never
+// leak into live genomes. also prints how many buffers the arena still allocates per 10 generations, which should
+// drop to about nothing once two generations exist. exits with 1 on a mismatch.
+// usage: CompactGenomeArenaCheck [populationSize] [generations]
+public class CompactGenomeArenaCheck {
+
+	public static void main(String... args) throws IOException {
+		int populationSize = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int generations = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+
+		NEATStats stats = new NEATStats();
+		stats.addNodeProbability = 0.05;
+		NEAT heapNeat = new NEAT(populationSize, new EvolutionBenchmarks.BenchmarkTrainer(20), stats);
+		heapNeat.initialize();
+		if (!(heapNeat.akRandom instanceof Serializable)) {
+			System.out.println("AKRandom is not Serializable, the two loops can't draw the same random numbers");
+			return;
+		}
+		NEAT arenaNeat = NEATCheckpoint.snapshot(heapNeat).restore(heapNeat.getTrainer(), new NEATStats());
+
+		CompactGenome[][] heap = new CompactGenome[2][populationSize];
+		CompactGenome[][] arena = new CompactGenome[2][populationSize];
+		for (int i = 0; i < populationSize; i++) {
+			heap[0][i] = CompactGenome.fromGenome(heapNeat.getPopulation().get(i));
+			arena[0][i] = CompactGenome.fromGenome(heapNeat.getPopulation().get(i));
+		}
+		CompactGenomeArena genomeArena = new CompactGenomeArena();
+		long allocated = 0;
+		int mismatches = 0;
+		for (int gen = 0; gen < generations; gen++) {
+			int parents = gen % 2, offspring = 1 - parents;
+			CompactGenerationBenchmark.nextGeneration(heap[parents], heap[offspring], heapNeat, null);
+			CompactGenerationBenchmark.nextGeneration(arena[parents], arena[offspring], arenaNeat, genomeArena);
+			for (int i = 0; i < populationSize; i++) {
+				if (!CompactGenomeArenaCheck.same(heap[offspring][i], arena[offspring][i])) {
+					if (mismatches++ < 10) {
+						System.out.printf("generation %d genome %d differs%n", gen, i);
+					}
+				}
+			}
+			if (gen % 10 == 9) {
+				System.out.printf("generations %2d-%2d: %,d buffers allocated, %,d live genomes%n", gen - 9, gen,
+						genomeArena.getNumAllocatedBuffers() - allocated, genomeArena.getNumLiveGenomes());
+				allocated = genomeArena.getNumAllocatedBuffers();
+			}
+		}
+		System.out.println(mismatches == 0 ? "OK" : mismatches + " mismatches");
+		if (mismatches > 0) {
+			System.exit(1);
+		}
+	}
+
+	private static boolean same(CompactGenome a, CompactGenome b) {
+		if (a.size() != b.size() || a.getNumHiddenNodes() != b.getNumHiddenNodes()
+				|| Double.compare(a.fitness, b.fitness) != 0) {
+			return false;
+		}
+		for (int i = 0; i < a.size(); i++) {
+			if (a.getInnovationNumber(i) != b.getInnovationNumber(i) || a.getInputNodeID(i) != b.getInputNodeID(i)
+					|| a.getOutputNodeID(i) != b.getOutputNodeID(i)
+					|| Double.compare(a.getConnectionWeight(i), b.getConnectionWeight(i)) != 0
+					|| a.isEnabled(i) != b.isEnabled(i)) {
+				return false;
+			}
+		}
+		for (int nodeID = 0; nodeID < a.getNumTotalNodes(); nodeID++) {
+			if (a.getActivationFunction(nodeID) != b.getActivationFunction(nodeID)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,110 @@
+package machinelearning.ne.neat.benchmark;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Random;
+
+import machinelearning.ne.neat.CompactGenomeOperators;
+import machinelearning.ne.neat.NEAT;
+import machinelearning.ne.neat.NEATCheckpoint;
+import machinelearning.ne.neat.NEATStats;
+import machinelearning.ne.neat.NEATTrainer;
+import machinelearning.ne.neat.genome.CompactGenome;
+import machinelearning.ne.neat.genome.ConnectionGene;
+import machinelearning.ne.neat.genome.Genome;
+
+// checks that CompactGenome and CompactGenomeOperators give the same genomes as Genome and NEATTrainer: the
+// conversion both ways, similarity, mutation and crossover. the two sides run on two NEATs restored from the same
+// checkpoint, so they draw the same random numbers. exits with 1 on a mismatch.
+// usage: CompactGenomeCheck [numGenomes] [seed]
+public class CompactGenomeCheck {
+
+	public static void main(String... args) throws IOException {
+		int numGenomes = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+		Random random = new Random(seed);
+
+		NEATTrainer trainer = new EvolutionBenchmarks.BenchmarkTrainer(40);
+		NEATStats stats = new NEATStats();
+		stats.addNodeProbability = 0.2;
+		stats.addConnectionProbability = 0.3;
+		stats.toggleConnectionProbability = 0.1;
+		stats.changeActivationFunctionProbability = 0.1;
+		NEAT neat = new NEAT(10, trainer, stats);
+		neat.initialize();
+		boolean sameRandom = neat.akRandom instanceof Serializable;
+		NEAT compactNeat = NEATCheckpoint.snapshot(neat).restore(trainer, new NEATStats());
+		if (!sameRandom) {
+			System.out.println("AKRandom is not Serializable, mutation and crossover are not compared");
+		}
+
+		int mismatches = 0;
+		for (int i = 0; i < numGenomes; i++) {
+			Genome a = CompiledNetworkCheck.randomGenome(random, 2 * i, i % 3 == 1, i % 3 == 2);
+			Genome b = CompiledNetworkCheck.randomGenome(random, 2 * i + 1, false, false);
+			a.fitness = random.nextDouble();
+			b.fitness = random.nextDouble();
+			CompactGenome compactA = CompactGenome.fromGenome(a), compactB = CompactGenome.fromGenome(b);
+			if (!CompactGenomeCheck.same(a, compactA)) {
+				mismatches += CompactGenomeCheck.report("conversion", i, a, compactA);
+			}
+
+			double similarity = NEATTrainer.similarity(a, b, 1, 1, 0.4);
+			double compactSimilarity = CompactGenomeOperators.similarity(compactA, compactB, 1, 1, 0.4);
+			if (Double.compare(similarity, compactSimilarity) != 0
+					&& !(Math.abs(similarity - compactSimilarity) <= 1e-12)) {
+				System.out.printf("similarity of genome %d: %s instead of %s%n", i, compactSimilarity, similarity);
+				mismatches++;
+			}
+			if (!sameRandom) {
+				continue;
+			}
+
+			for (int k = 0; k < 5; k++) {
+				trainer.mutate(a, neat);
+				CompactGenomeOperators.mutate(compactA, compactNeat);
+			}
+			if (!CompactGenomeCheck.same(a, compactA)) {
+				mismatches += CompactGenomeCheck.report("mutation", i, a, compactA);
+			}
+
+			Genome child = trainer.crossover(a, b, neat);
+			CompactGenome compactChild = CompactGenomeOperators.crossover(compactA, compactB, compactNeat);
+			if (!CompactGenomeCheck.same(child, compactChild)) {
+				mismatches += CompactGenomeCheck.report("crossover", i, child, compactChild);
+			}
+		}
+		System.out.println(mismatches == 0 ? "OK" : mismatches + " mismatches");
+		if (mismatches > 0) {
+			System.exit(1);
+		}
+	}
+
+	static boolean same(Genome geno, CompactGenome compact) {
+		if (geno.size() != compact.size() || geno.getNumHiddenNodes() != compact.getNumHiddenNodes()) {
+			return false;
+		}
+		for (int i = 0; i < geno.size(); i++) {
+			ConnectionGene cg = geno.get(i);
+			if (cg.getInnovationNumber() != compact.getInnovationNumber(i)
+					|| cg.getInputNodeID() != compact.getInputNodeID(i)
+					|| cg.getOutputNodeID() != compact.getOutputNodeID(i)
+					|| Double.compare(cg.getConnectionWeight(), compact.getConnectionWeight(i)) != 0
+					|| cg.isEnabled() != compact.isEnabled(i)) {
+				return false;
+			}
+		}
+		for (int nodeID = 0; nodeID < geno.getNumTotalNodes(); nodeID++) {
+			if (geno.getActivationFunction(nodeID) != compact.getActivationFunction(nodeID)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int report(String what, int i, Genome expected, CompactGenome actual) {
+		System.out.printf("%s of genome %d differs:%n%sinstead of%n%s", what, i, actual, expected.toString(false, false));
+		return 1;
+	}
+
+}
@@ -0,0 +1,114 @@
+package machinelearning.ne.neat.benchmark;
+
+import java.util.Random;
+
+import machinelearning.ne.neat.genome.ActivationFunction;
+import machinelearning.ne.neat.genome.BaseTemplate;
+import machinelearning.ne.neat.genome.ConnectionGene;
+import machinelearning.ne.neat.genome.Genome;
+import machinelearning.ne.neat.network.CompiledNetwork;
+import machinelearning.ne.neat.network.NeuralNetwork;
+
+// checks that CompiledNetwork.calculate gives the outputs of NeuralNetwork.calculate for random genomes:
+// feed-forward ones, ones with duplicate genes and ones with back edges. the networks are called several times in a
+// row so the previous activations a back edge reads are compared as well. exits with 1 on a mismatch.
+// usage: CompiledNetworkCheck [numGenomes] [seed]
+public class CompiledNetworkCheck {
+
+	private static final double TOLERANCE = 1e-9;
+	private static final int CALLS_PER_GENOME = 5;
+
+	public static void main(String... args) {
+		int numGenomes = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+		Random random = new Random(seed);
+
+		String[] kinds = { "feed-forward", "duplicate genes", "back edges" };
+		double[] maxDiff = new double[kinds.length];
+		int mismatches = 0;
+		for (int i = 0; i < numGenomes; i++) {
+			int kind = i % kinds.length;
+			Genome geno = CompiledNetworkCheck.randomGenome(random, i, kind == 1, kind == 2);
+			NeuralNetwork network = new NeuralNetwork(geno);
+			CompiledNetwork compiled = new CompiledNetwork(geno);
+			double[] inputs = new double[geno.getBaseTemplate().numInputNodes()];
+			for (int call = 0; call < CompiledNetworkCheck.CALLS_PER_GENOME; call++) {
+				for (int j = 0; j < inputs.length; j++) {
+					inputs[j] = random.nextGaussian();
+				}
+				network.calculate(inputs);
+				double[] outputs = compiled.calculate(inputs);
+				for (int o = 0; o < outputs.length; o++) {
+					double expected = network.getOutputNeurons().get(o).getActivation();
+					double diff = Math.abs(outputs[o] - expected) / Math.max(1, Math.abs(expected));
+					if (Double.compare(outputs[o], expected) == 0) {
+						diff = 0;
+					}
+					maxDiff[kind] = Math.max(maxDiff[kind], diff);
+					if (!(diff <= CompiledNetworkCheck.TOLERANCE)) {
+						if (mismatches++ < 10) {
+							System.out.printf("mismatch: %s genome %d call %d output %d: %s instead of %s%n",
+									kinds[kind], i, call, o, outputs[o], expected);
+						}
+					}
+				}
+			}
+		}
+		for (int kind = 0; kind < kinds.length; kind++) {
+			System.out.printf("%-16s max relative difference %.3g%n", kinds[kind], maxDiff[kind]);
+		}
+		System.out.println(mismatches == 0 ? "OK" : mismatches + " mismatches");
+		if (mismatches > 0) {
+			System.exit(1);
+		}
+	}
+
+	// nodes are ranked bias/inputs, hidden nodes by ID, outputs, every gene goes from a lower to a higher rank unless
+	// it is a back edge. duplicates repeat the structure of an earlier gene with another weight
+	static Genome randomGenome(Random random, long ID, boolean duplicates, boolean backEdges) {
+		int numInputs = 1 + random.nextInt(5), numOutputs = 1 + random.nextInt(3), numHidden = random.nextInt(10);
+		Genome geno = new Genome(ID, new BaseTemplate(random.nextBoolean(), numInputs, numOutputs), numHidden);
+		int numNodes = numInputs + numOutputs + numHidden + 1;
+		for (int node = numInputs + 1; node < numNodes; node++) {
+			geno.setActivationFunction(node, ActivationFunction.of(random.nextInt(ActivationFunction.values().length)));
+		}
+
+		int innovationNumber = 0;
+		for (int k = 0; k < 40; k++) {
+			int in = random.nextInt(numNodes), out = random.nextInt(numNodes);
+			if (out <= numInputs || (in == 0 && !geno.getBaseTemplate().hasBias())) {
+				continue;
+			}
+			boolean forward = CompiledNetworkCheck.rank(in, numInputs, numOutputs) < CompiledNetworkCheck.rank(out,
+					numInputs, numOutputs);
+			if (!forward && !(backEdges && in > numInputs)) {
+				continue;
+			}
+			if (geno.hasConnection(in, out)) {
+				continue;
+			}
+			geno.add(new ConnectionGene(innovationNumber++, in, out, random.nextDouble() * 4 - 2,
+					random.nextInt(5) > 0));
+		}
+		if (duplicates) {
+			int numGenes = geno.size();
+			for (int k = 0; k < numGenes / 3; k++) {
+				ConnectionGene cg = geno.get(random.nextInt(numGenes));
+				geno.add(new ConnectionGene(innovationNumber++, cg.getInputNodeID(), cg.getOutputNodeID(),
+						random.nextDouble() * 4 - 2, random.nextInt(5) > 0));
+			}
+		}
+		return geno;
+	}
+
+	private static int rank(int nodeID, int numInputs, int numOutputs) {
+		if (nodeID <= numInputs) {
+			return 0;
+		}
+		if (nodeID <= numInputs + numOutputs) {
+			return Integer.MAX_VALUE - numOutputs + nodeID - numInputs;
+		}
+		return nodeID;
+	}
+
+}
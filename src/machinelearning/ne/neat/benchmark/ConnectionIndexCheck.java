@@ -0,0 +1,192 @@
+package machinelearning.ne.neat.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import machinelearning.ne.neat.genome.BaseTemplate;
+import machinelearning.ne.neat.genome.CompactGenome;
+import machinelearning.ne.neat.genome.CompactGenomeArena;
+import machinelearning.ne.neat.genome.ConnectionGene;
+import machinelearning.ne.neat.genome.Genome;
+import math.AKRandom;
+
+// checks the connection index of Genome and CompactGenome: hasConnection against a scan of the genes after random
+// edits, copies and crossovers, and sampleUnusedConnection for only returning unused valid pairs, all of them about
+// equally often. exits with 1 on a mismatch.
+// usage: ConnectionIndexCheck [numGenomes] [seed]
+public class ConnectionIndexCheck {
+
+	private static final int NUM_NODES = 29;
+	private static final int NUM_SAMPLES = 60000;
+
+	public static void main(String... args) {
+		int numGenomes = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+		Random random = new Random(seed);
+		BaseTemplate template = new BaseTemplate(true, 5, 3);
+		int numHidden = ConnectionIndexCheck.NUM_NODES - 9;
+
+		int mismatches = 0;
+		long checks = 0;
+		for (int t = 0; t < numGenomes; t++) {
+			Genome geno = new Genome(t, template, numHidden);
+			for (int op = 0; op < 400; op++) {
+				switch (random.nextInt(10)) {
+				case 0:
+				case 1:
+				case 2:
+				case 3:
+					geno.add(ConnectionIndexCheck.randomGene(random));
+					break;
+				case 4:
+					if (!geno.isEmpty()) {
+						geno.remove(random.nextInt(geno.size()));
+					}
+					break;
+				case 5:
+					if (!geno.isEmpty()) {
+						geno.set(random.nextInt(geno.size()), ConnectionIndexCheck.randomGene(random));
+					}
+					break;
+				case 6:
+					geno.cleanup();
+					break;
+				case 7:
+					if (!geno.isEmpty()) {
+						geno.getGeneForWrite(random.nextInt(geno.size())).setConnectionWeight(1);
+					}
+					break;
+				case 8:
+					geno = new Genome(geno.ID, geno);
+					break;
+				default:
+					geno.add(0, ConnectionIndexCheck.randomGene(random));
+				}
+				for (int q = 0; q < 5; q++) {
+					int in = random.nextInt(ConnectionIndexCheck.NUM_NODES),
+							out = random.nextInt(ConnectionIndexCheck.NUM_NODES);
+					checks++;
+					if (geno.hasConnection(in, out) != ConnectionIndexCheck.scan(geno, in, out)) {
+						mismatches++;
+					}
+				}
+			}
+		}
+
+		CompactGenomeArena arena = new CompactGenomeArena();
+		AKRandom akRandom = new AKRandom();
+		for (int t = 0; t < numGenomes; t++) {
+			CompactGenome geno = new CompactGenome(t, template, numHidden);
+			for (int op = 0; op < 200; op++) {
+				switch (random.nextInt(6)) {
+				case 0:
+				case 1:
+				case 2:
+					geno.addGene(random.nextInt(1000), random.nextInt(ConnectionIndexCheck.NUM_NODES),
+							random.nextInt(ConnectionIndexCheck.NUM_NODES), 0, true);
+					break;
+				case 3:
+					geno.cleanup();
+					break;
+				case 4:
+					geno = new CompactGenome(geno.ID, geno);
+					break;
+				default:
+					arena.nextGeneration();
+					CompactGenome child = arena.newGenome(geno.ID, template, numHidden, 4);
+					child.inheritGenes(geno, geno, akRandom);
+					geno = child;
+				}
+				for (int q = 0; q < 5; q++) {
+					int in = random.nextInt(ConnectionIndexCheck.NUM_NODES),
+							out = random.nextInt(ConnectionIndexCheck.NUM_NODES);
+					checks++;
+					if (geno.hasConnection(in, out) != ConnectionIndexCheck.scan(geno, in, out)) {
+						mismatches++;
+					}
+				}
+			}
+		}
+		System.out.printf("hasConnection: %,d checks, %d mismatches%n", checks, mismatches);
+
+		Genome geno = new Genome(0, new BaseTemplate(true, 2, 2), 2);
+		geno.add(new ConnectionGene(0, 1, 3, 0, true));
+		geno.add(new ConnectionGene(1, 2, 5, 0, false));
+		geno.add(new ConnectionGene(2, 5, 4, 0, true));
+		mismatches += ConnectionIndexCheck.checkSampler("Genome", geno,
+				() -> geno.sampleUnusedConnection((in, out) -> in != out, akRandom));
+		CompactGenome compact = CompactGenome.fromGenome(geno);
+		mismatches += ConnectionIndexCheck.checkSampler("CompactGenome", geno,
+				() -> compact.sampleUnusedConnection((in, out) -> in != out, akRandom));
+
+		System.out.println(mismatches == 0 ? "OK" : mismatches + " mismatches");
+		if (mismatches > 0) {
+			System.exit(1);
+		}
+	}
+
+	// every sample has to be one of the candidates and every candidate has to come up within 10% of its share
+	private static int checkSampler(String what, Genome geno, Sampler sampler) {
+		Map<Long, Integer> counts = new HashMap<>();
+		int maxNodeID = geno.getNumTotalNodes() - 1;
+		for (int in = 1; in <= maxNodeID; in++) {
+			for (int out = geno.getBaseTemplate().numInputNodes() + 1; out <= maxNodeID; out++) {
+				if (in != out && !ConnectionIndexCheck.scan(geno, in, out)) {
+					counts.put((long) in << 32 | out, 0);
+				}
+			}
+		}
+		int mismatches = 0;
+		for (int i = 0; i < ConnectionIndexCheck.NUM_SAMPLES; i++) {
+			long key = sampler.sample();
+			if (!counts.containsKey(key)) {
+				if (mismatches++ < 10) {
+					System.out.printf("%s sampled %d -> %d%n", what, key >>> 32, (int) key);
+				}
+				continue;
+			}
+			counts.merge(key, 1, Integer::sum);
+		}
+		double expected = (double) ConnectionIndexCheck.NUM_SAMPLES / counts.size();
+		int min = Integer.MAX_VALUE, max = 0;
+		for (int count : counts.values()) {
+			min = Math.min(min, count);
+			max = Math.max(max, count);
+			if (Math.abs(count - expected) > 0.1 * expected) {
+				mismatches++;
+			}
+		}
+		System.out.printf("%s sampler: %d candidates, %,d to %,d samples each, %,.0f expected%n", what,
+				counts.size(), min, max, expected);
+		return mismatches;
+	}
+
+	private static ConnectionGene randomGene(Random random) {
+		return new ConnectionGene(random.nextInt(1000), random.nextInt(ConnectionIndexCheck.NUM_NODES),
+				random.nextInt(ConnectionIndexCheck.NUM_NODES), 0, true);
+	}
+
+	private static boolean scan(Genome geno, int inputNodeID, int outputNodeID) {
+		for (ConnectionGene cg : geno) {
+			if (cg.getInputNodeID() == inputNodeID && cg.getOutputNodeID() == outputNodeID) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean scan(CompactGenome geno, int inputNodeID, int outputNodeID) {
+		for (int i = 0; i < geno.size(); i++) {
+			if (geno.getInputNodeID(i) == inputNodeID && geno.getOutputNodeID(i) == outputNodeID) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private interface Sampler {
+		public abstract long sample();
+	}
+
+}
@@ -0,0 +1,109 @@
+package machinelearning.ne.neat.benchmark;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Random;
+
+import machinelearning.ne.neat.CompactGenomeOperators;
+import machinelearning.ne.neat.NEAT;
+import machinelearning.ne.neat.NEATCheckpoint;
+import machinelearning.ne.neat.NEATStats;
+import machinelearning.ne.neat.NEATTrainer;
+import machinelearning.ne.neat.genome.CompactGenome;
+import machinelearning.ne.neat.genome.CompactGenomeArena;
+import machinelearning.ne.neat.genome.ConnectionGene;
+import machinelearning.ne.neat.genome.Genome;
+
+// checks the one pass crossover of Genome and CompactGenome, on the heap and in an arena, against a plain merge of
+// the parents followed by cleanup(). the reference and the kernels run on NEATs restored from the same checkpoint,
+// so they draw the same random numbers. exits with 1 on a mismatch.
+// usage: CrossoverCheck [numGenomes] [seed]
+public class CrossoverCheck {
+
+	public static void main(String... args) throws IOException {
+		int numGenomes = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+		Random random = new Random(seed);
+
+		NEATTrainer trainer = new EvolutionBenchmarks.BenchmarkTrainer(40);
+		NEAT referenceNeat = new NEAT(10, trainer, new NEATStats());
+		referenceNeat.initialize();
+		if (!(referenceNeat.akRandom instanceof Serializable)) {
+			System.out.println("AKRandom is not Serializable, the crossovers can't draw the same random numbers");
+			return;
+		}
+		NEATCheckpoint checkpoint = NEATCheckpoint.snapshot(referenceNeat);
+		NEAT genomeNeat = checkpoint.restore(trainer, new NEATStats());
+		NEAT compactNeat = checkpoint.restore(trainer, new NEATStats());
+		NEAT arenaNeat = checkpoint.restore(trainer, new NEATStats());
+		CompactGenomeArena arena = new CompactGenomeArena();
+
+		int mismatches = 0;
+		for (int i = 0; i < numGenomes; i++) {
+			Genome a = CompiledNetworkCheck.randomGenome(random, 2 * i, i % 2 == 1, false);
+			Genome b = CompiledNetworkCheck.randomGenome(random, 2 * i + 1, i % 2 == 1, false);
+			a.cleanup();
+			b.cleanup();
+			CompactGenome compactA = CompactGenome.fromGenome(a), compactB = CompactGenome.fromGenome(b);
+
+			Genome expected = CrossoverCheck.referenceCrossover(a, b, referenceNeat);
+			Genome child = trainer.crossover(a, b, genomeNeat);
+			if (!CompactGenomeCheck.same(expected, CompactGenome.fromGenome(child))) {
+				mismatches += CrossoverCheck.report("Genome", i);
+			}
+			if (!CompactGenomeCheck.same(expected, CompactGenomeOperators.crossover(compactA, compactB, compactNeat))) {
+				mismatches += CrossoverCheck.report("CompactGenome", i);
+			}
+			if (i % 50 == 0) {
+				arena.nextGeneration();
+			}
+			if (!CompactGenomeCheck.same(expected,
+					CompactGenomeOperators.crossover(compactA, compactB, arenaNeat, arena))) {
+				mismatches += CrossoverCheck.report("CompactGenome in an arena", i);
+			}
+		}
+		System.out.println(mismatches == 0 ? "OK" : mismatches + " mismatches");
+		if (mismatches > 0) {
+			System.exit(1);
+		}
+	}
+
+	// the crossover as it was before the kernel: merge by innovation number, then cleanup() for the hidden nodes
+	private static Genome referenceCrossover(Genome a, Genome b, NEAT neat) {
+		Genome child = new Genome(neat.getNewGenomeID(),
+				NEATTrainer.forgeBaseTemplates(a.getBaseTemplate(), b.getBaseTemplate()),
+				Math.max(a.getNumHiddenNodes(), b.getNumHiddenNodes()));
+		int i1 = 0, i2 = 0;
+		while (i1 < a.size()) {
+			ConnectionGene g1 = a.get(i1);
+			ConnectionGene g2 = i2 < b.size() ? b.get(i2) : null;
+			if (g2 != null && g1.getInnovationNumber() == g2.getInnovationNumber()) {
+				ConnectionGene g = neat.akRandom.nextRandomChance(0.5) ? g1.clone() : g2.clone();
+				if (g1.isEnabled() && g2.isEnabled()) {
+					g.setEnabled(true);
+				} else if (g1.isEnabled() || g2.isEnabled()) {
+					g.setEnabled(neat.akRandom.nextRandomChance(.25));
+				} else {
+					g.setEnabled(false);
+				}
+				child.add(g);
+				i1++;
+				i2++;
+			} else if (g2 == null || g1.getInnovationNumber() < g2.getInnovationNumber()) {
+				child.add(g1.clone());
+				i1++;
+			} else {
+				i2++;
+			}
+		}
+		child.cleanup();
+		child.inheritActivationFunctions(a, b);
+		return child;
+	}
+
+	private static int report(String what, int i) {
+		System.out.printf("%s crossover of pair %d differs from the reference%n", what, i);
+		return 1;
+	}
+
+}
@@ -0,0 +1,201 @@
+package machinelearning.ne.neat.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import data.tuple.Tuple2D;
+import machinelearning.geneticalgorithm.GAEnvironment;
+import machinelearning.geneticalgorithm.GeneticTrainer;
+import machinelearning.ne.neat.NEAT;
+import machinelearning.ne.neat.NEATStats;
+import machinelearning.ne.neat.NEATTrainer;
+import machinelearning.ne.neat.genome.BaseTemplate;
+import machinelearning.ne.neat.genome.ConnectionGene;
+import machinelearning.ne.neat.genome.Genome;
+import machinelearning.ne.neat.network.NeuralNetwork;
+
+// benchmarks of the evolution hot paths, each run for every population size x genome size.
+// usage: EvolutionBenchmarks [name filter]
+// e.g. "EvolutionBenchmarks similarity" only runs NEATTrainer.similarity
+public class EvolutionBenchmarks {
+
+	public static final int[] POPULATION_SIZES = { 100, 1000 };
+	public static final int[] GENOME_SIZES = { 20, 200 };
+
+	public static void main(String... args) {
+		String filter = args.length > 0 ? args[0] : "";
+		BenchmarkRunner runner = new BenchmarkRunner(3, 5, 500);
+
+		for (int populationSize : EvolutionBenchmarks.POPULATION_SIZES) {
+			for (int genomeSize : EvolutionBenchmarks.GENOME_SIZES) {
+				String params = "population=" + populationSize + " genes=" + genomeSize;
+				EvolutionBenchmarks.runAll(runner, filter, params, populationSize, genomeSize);
+			}
+		}
+	}
+
+	private static void runAll(BenchmarkRunner runner, String filter, String params, int populationSize,
+			int genomeSize) {
+		BenchmarkTrainer trainer = new BenchmarkTrainer(genomeSize);
+		NEAT neat = new NEAT(populationSize, trainer, new NEATStats());
+		neat.initialize();
+		List<Genome> population = new ArrayList<>(neat.getPopulation());
+		Random random = new Random(0);
+
+		if ("crossover".contains(filter)) {
+			runner.run("NEATTrainer.crossover", params, () -> {
+				Genome a = population.get(random.nextInt(population.size()));
+				Genome b = population.get(random.nextInt(population.size()));
+				runner.consume(trainer.crossover(a, b, neat).size());
+			});
+		}
+		if ("similarity".contains(filter)) {
+			runner.run("NEATTrainer.similarity", params, () -> {
+				Genome a = population.get(random.nextInt(population.size()));
+				Genome b = population.get(random.nextInt(population.size()));
+				runner.consume(NEATTrainer.similarity(a, b, 1.0, 1.0, 0.4));
+			});
+		}
+		if ("inheritGenes".contains(filter)) {
+			runner.run("Genome.inheritGenes", params, () -> {
+				Genome a = population.get(random.nextInt(population.size()));
+				Genome b = population.get(random.nextInt(population.size()));
+				Genome child = new Genome(neat.getNewGenomeID(), a.getBaseTemplate(), 0);
+				child.inheritGenes(a, b, neat.akRandom);
+				runner.consume(child.size());
+			});
+		}
+		if ("mutate".contains(filter)) {
+			// mutates a fresh clone every time, so the population keeps genomeSize genes for the other benchmarks
+			runner.run("NEATTrainer.mutate", params, () -> {
+				Genome clone = new Genome(neat.getNewGenomeID(), population.get(random.nextInt(population.size())));
+				trainer.mutate(clone, neat);
+				runner.consume(clone.size());
+			});
+		}
+		if ("NeuralNetwork.calculate".contains(filter)) {
+			NeuralNetwork network = new NeuralNetwork(population.get(0));
+			double[] inputs = new double[trainer.template.numInputNodes()];
+			runner.run("NeuralNetwork.calculate", params, () -> {
+				inputs[random.nextInt(inputs.length)] = random.nextDouble();
+				network.calculate(inputs);
+				runner.consume(network.getOutputNeurons().get(0).getActivation());
+			});
+		}
+		if ("NEAT.runGeneration".contains(filter)) {
+			runner.run("NEAT.runGeneration", params, neat::runGeneration);
+		}
+		if ("GAEnvironment.runGeneration".contains(filter)) {
+			GAEnvironment<double[]> env = new GAEnvironment<>(populationSize, new VectorTrainer(genomeSize));
+			runner.run("GAEnvironment.runGeneration", params, env::runGeneration);
+		}
+	}
+
+	// fully connects (bias + inputs) to the outputs, numInputs is picked so there are genomeSize genes
+	static class BenchmarkTrainer implements NEATTrainer {
+
+		final BaseTemplate template;
+		final int genomeSize;
+		final double[] inputs;
+
+		BenchmarkTrainer(int genomeSize) {
+			this.genomeSize = genomeSize;
+			this.template = new BaseTemplate(Math.max(1, genomeSize / 4 - 1), 4);
+			this.inputs = new double[this.template.numInputNodes()];
+			for (int i = 0; i < this.inputs.length; i++) {
+				this.inputs[i] = Math.sin(i);
+			}
+		}
+
+		@Override
+		public double calculateFitness(Genome geno, NEAT neat) {
+			NeuralNetwork network = new NeuralNetwork(geno);
+			network.calculate(this.inputs);
+			double fitness = 0;
+			for (int i = 0; i < network.getOutputNeurons().size(); i++) {
+				fitness += network.getOutputNeurons().get(i).getActivation();
+			}
+			return fitness;
+		}
+
+		@Override
+		public Genome generateRandomGenome(NEAT neat) {
+			Genome geno = new Genome(neat.getNewGenomeID(), this.template, 0);
+			double strength = neat.getNeatStats().getWeightRandomizeStrengh(neat);
+			for (int in = 0; in <= this.template.numInputNodes() && geno.size() < this.genomeSize; in++) {
+				for (int o = 1; o <= this.template.numOutputNodes() && geno.size() < this.genomeSize; o++) {
+					int out = this.template.numInputNodes() + o;
+					int innov = neat.getInnovationNumberForConnectionMutation(in, out);
+					geno.add(new ConnectionGene(innov, in, out, neat.akRandom.nextRandomNumber(-strength, strength),
+							true));
+				}
+			}
+			return geno;
+		}
+
+	}
+
+	// maximizes the negative sum of squares of a real vector
+	static class VectorTrainer implements GeneticTrainer<double[]> {
+
+		final int genomeSize;
+		final Random random = new Random(0);
+
+		VectorTrainer(int genomeSize) {
+			this.genomeSize = genomeSize;
+		}
+
+		@Override
+		public double calculateFitness(double[] a, GAEnvironment<double[]> env) {
+			double sum = 0;
+			for (double d : a) {
+				sum -= d * d;
+			}
+			return sum;
+		}
+
+		@Override
+		public double getCrossoverChance(Tuple2D<double[], double[]> partners, GAEnvironment<double[]> env) {
+			return .7;
+		}
+
+		@Override
+		public double[] generateRandom(GAEnvironment<double[]> env) {
+			double[] a = new double[this.genomeSize];
+			for (int i = 0; i < a.length; i++) {
+				a[i] = this.random.nextDouble() * 2 - 1;
+			}
+			return a;
+		}
+
+		@Override
+		public double[] crossover(double[] a, double[] b, GAEnvironment<double[]> env) {
+			double[] child = new double[a.length];
+			for (int i = 0; i < child.length; i++) {
+				child[i] = this.random.nextBoolean() ? a[i] : b[i];
+			}
+			return child;
+		}
+
+		@Override
+		public double[] mutate(double[] a, GAEnvironment<double[]> env) {
+			double[] mutated = a.clone();
+			mutated[this.random.nextInt(mutated.length)] += this.random.nextGaussian() * 0.1;
+			return mutated;
+		}
+
+		@Override
+		public List<Tuple2D<double[], double[]>> selectCrossoverPartners(List<double[]> population,
+				GAEnvironment<double[]> env) {
+			return this.selectCrossoverPartnersSUS(population, population.size() / 3, env);
+		}
+
+		@Override
+		public List<double[]> killOff(List<double[]> population, int numToKill, GAEnvironment<double[]> env) {
+			return this.killOffWorst(population, numToKill, env);
+		}
+
+	}
+
+}
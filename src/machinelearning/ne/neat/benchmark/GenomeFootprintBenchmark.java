@@ -0,0 +1,67 @@
+package machinelearning.ne.neat.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import machinelearning.ne.neat.genome.BaseTemplate;
+import machinelearning.ne.neat.genome.CompactGenome;
+import machinelearning.ne.neat.genome.ConnectionGene;
+import machinelearning.ne.neat.genome.Genome;
+
+// compares the retained heap of a population stored as Genome against the same population as CompactGenome.
+// usage: GenomeFootprintBenchmark [populationSize] [genesPerGenome]
+public class GenomeFootprintBenchmark {
+
+	public static void main(String... args) {
+		int populationSize = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int genesPerGenome = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+		BaseTemplate template = new BaseTemplate(10, 4);
+		Random random = new Random(0);
+
+		long before = GenomeFootprintBenchmark.usedMemory();
+		List<Genome> genomes = new ArrayList<>(populationSize);
+		for (int i = 0; i < populationSize; i++) {
+			Genome geno = new Genome(i, template, genesPerGenome / 4);
+			for (int innov = 0; innov < genesPerGenome; innov++) {
+				geno.add(new ConnectionGene(innov, random.nextInt(15), 15 + random.nextInt(genesPerGenome / 4 + 1),
+						random.nextDouble() * 4 - 2, random.nextInt(10) != 0));
+			}
+			genomes.add(geno);
+		}
+		long genomeBytes = GenomeFootprintBenchmark.usedMemory() - before;
+
+		before = GenomeFootprintBenchmark.usedMemory();
+		List<CompactGenome> compactGenomes = new ArrayList<>(populationSize);
+		for (Genome geno : genomes) {
+			compactGenomes.add(CompactGenome.fromGenome(geno));
+		}
+		long compactBytes = GenomeFootprintBenchmark.usedMemory() - before;
+
+		System.out.println("Population of " + populationSize + " genomes with " + genesPerGenome + " genes each");
+		System.out.printf("Genome:        %,15d bytes (%,.1f bytes/gene)%n", genomeBytes,
+				(double) genomeBytes / populationSize / genesPerGenome);
+		System.out.printf("CompactGenome: %,15d bytes (%,.1f bytes/gene)%n", compactBytes,
+				(double) compactBytes / populationSize / genesPerGenome);
+
+		// keep both populations reachable until both measurements are done
+		if (genomes.size() + compactGenomes.size() == -1) {
+			System.out.println();
+		}
+	}
+
+	static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
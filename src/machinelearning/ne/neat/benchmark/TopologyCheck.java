@@ -0,0 +1,160 @@
+package machinelearning.ne.neat.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import machinelearning.ne.neat.genome.BaseTemplate;
+import machinelearning.ne.neat.genome.CompactGenome;
+import machinelearning.ne.neat.genome.ConnectionGene;
+import machinelearning.ne.neat.genome.Genome;
+
+// checks the incremental topology of Genome and CompactGenome against a depth first search over the genes:
+// wouldCreateCycle, isAcyclic, topologicalOrder and layerOf, while genes are added and sometimes removed.
+// exits with 1 on a mismatch.
+// usage: TopologyCheck [numGenomes] [seed]
+public class TopologyCheck {
+
+	public static void main(String... args) {
+		int numGenomes = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+		Random random = new Random(seed);
+
+		int mismatches = 0;
+		long checks = 0;
+		for (int t = 0; t < numGenomes; t++) {
+			int numInputs = 1 + random.nextInt(5);
+			BaseTemplate template = new BaseTemplate(true, numInputs, 1 + random.nextInt(3));
+			Genome geno = new Genome(t, template, random.nextInt(40));
+			CompactGenome compact = new CompactGenome(t, template, geno.getNumHiddenNodes());
+			int numNodes = geno.getNumTotalNodes();
+			boolean cyclic = false;
+			for (int e = 0; e < 150; e++) {
+				int in = random.nextInt(numNodes), out = numInputs + 1 + random.nextInt(numNodes - numInputs - 1);
+				boolean expected = TopologyCheck.reaches(geno, out, in);
+				checks++;
+				if (geno.wouldCreateCycle(in, out) != expected || compact.wouldCreateCycle(in, out) != expected) {
+					mismatches += TopologyCheck.report(t, "wouldCreateCycle " + in + " -> " + out);
+				}
+				// mostly keep the genome acyclic, but check cyclic ones as well
+				if (expected && random.nextInt(10) != 0) {
+					continue;
+				}
+				if (!geno.isEmpty() && random.nextInt(20) == 0) {
+					// a removal makes Genome rebuild its topology
+					geno.remove(geno.size() - 1);
+					compact = CompactGenome.fromGenome(geno);
+					cyclic = !TopologyCheck.acyclic(geno);
+				} else {
+					geno.add(new ConnectionGene(e, in, out, 0, random.nextBoolean()));
+					compact.addGene(e, in, out, 0, geno.get(geno.size() - 1).isEnabled());
+					cyclic |= expected;
+				}
+				if (geno.isAcyclic() == cyclic || compact.isAcyclic() == cyclic) {
+					mismatches += TopologyCheck.report(t, "isAcyclic");
+				}
+				if (!cyclic) {
+					mismatches += TopologyCheck.checkOrder(t, geno, geno.topologicalOrder());
+					mismatches += TopologyCheck.checkOrder(t, geno, compact.topologicalOrder());
+					int[] layers = TopologyCheck.layers(geno);
+					for (int nodeID = 0; nodeID < numNodes; nodeID++) {
+						if (geno.layerOf(nodeID) != layers[nodeID] || compact.layerOf(nodeID) != layers[nodeID]) {
+							mismatches += TopologyCheck.report(t, "layerOf " + nodeID);
+						}
+					}
+				}
+			}
+		}
+		System.out.printf("%,d genomes, %,d cycle checks%n", numGenomes, checks);
+		System.out.println(mismatches == 0 ? "OK" : mismatches + " mismatches");
+		if (mismatches > 0) {
+			System.exit(1);
+		}
+	}
+
+	// every node exactly once, every connection from an earlier to a later node
+	private static int checkOrder(int t, Genome geno, int[] order) {
+		int[] position = new int[geno.getNumTotalNodes()];
+		Arrays.fill(position, -1);
+		if (order.length != position.length) {
+			return TopologyCheck.report(t, "topologicalOrder has " + order.length + " nodes");
+		}
+		for (int i = 0; i < order.length; i++) {
+			if (position[order[i]] >= 0) {
+				return TopologyCheck.report(t, "topologicalOrder repeats " + order[i]);
+			}
+			position[order[i]] = i;
+		}
+		for (ConnectionGene cg : geno) {
+			if (position[cg.getInputNodeID()] >= position[cg.getOutputNodeID()]) {
+				return TopologyCheck.report(t, "topologicalOrder puts " + cg.getOutputNodeID() + " first");
+			}
+		}
+		return 0;
+	}
+
+	private static List<List<Integer>> successors(Genome geno) {
+		List<List<Integer>> successors = new ArrayList<>();
+		for (int i = 0; i < geno.getNumTotalNodes(); i++) {
+			successors.add(new ArrayList<>());
+		}
+		for (ConnectionGene cg : geno) {
+			successors.get(cg.getInputNodeID()).add(cg.getOutputNodeID());
+		}
+		return successors;
+	}
+
+	// true if to can be reached from from over the connections, a node reaches itself
+	private static boolean reaches(Genome geno, int from, int to) {
+		List<List<Integer>> successors = TopologyCheck.successors(geno);
+		boolean[] seen = new boolean[successors.size()];
+		List<Integer> stack = new ArrayList<>();
+		stack.add(from);
+		while (!stack.isEmpty()) {
+			int node = stack.remove(stack.size() - 1);
+			if (node == to) {
+				return true;
+			}
+			if (!seen[node]) {
+				seen[node] = true;
+				stack.addAll(successors.get(node));
+			}
+		}
+		return false;
+	}
+
+	private static boolean acyclic(Genome geno) {
+		for (ConnectionGene cg : geno) {
+			if (TopologyCheck.reaches(geno, cg.getOutputNodeID(), cg.getInputNodeID())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// 0 for the bias and the inputs, otherwise 1 + the deepest layer connecting to the node and at least 1
+	private static int[] layers(Genome geno) {
+		int numInputs = geno.getBaseTemplate().numInputNodes();
+		int[] layers = new int[geno.getNumTotalNodes()];
+		for (int nodeID = numInputs + 1; nodeID < layers.length; nodeID++) {
+			layers[nodeID] = 1;
+		}
+		for (boolean changed = true; changed;) {
+			changed = false;
+			for (ConnectionGene cg : geno) {
+				if (layers[cg.getOutputNodeID()] < layers[cg.getInputNodeID()] + 1) {
+					layers[cg.getOutputNodeID()] = layers[cg.getInputNodeID()] + 1;
+					changed = true;
+				}
+			}
+		}
+		return layers;
+	}
+
+	private static int report(int t, String what) {
+		System.out.printf("genome %d: %s differs%n", t, what);
+		return 1;
+	}
+
+}
@@ -0,0 +1,36 @@
+package machinelearning.ne.neat.genome;
+
+import machinelearning.ne.neat.network.Neuron;
+
+// activation function gene of a node. STEEP_SIGMOID has to stay first, genomes store the ordinal and 0 means
+// the default
+public enum ActivationFunction {
+	STEEP_SIGMOID, SIGMOID, RELU, LINEAR;
+
+	public static final ActivationFunction DEFAULT = ActivationFunction.STEEP_SIGMOID;
+
+	private static final ActivationFunction[] VALUES = ActivationFunction.values();
+
+	public double apply(double input) {
+		switch (this) {
+		case SIGMOID:
+			return Neuron.sigmoidFunc(input);
+		case RELU:
+			return Neuron.ReLU(input);
+		case LINEAR:
+			return Neuron.linearActivation(input, 1.0);
+		case STEEP_SIGMOID:
+		default:
+			return Neuron.steepSigmoidFunc(input);
+		}
+	}
+
+	public static ActivationFunction of(int ordinal) {
+		return ActivationFunction.VALUES[ordinal];
+	}
+
+	public static int count() {
+		return ActivationFunction.VALUES.length;
+	}
+
+}
@@ -0,0 +1,508 @@
+package machinelearning.ne.neat.genome;
+
+import java.util.Arrays;
+
+import math.AKRandom;
+
+// Genome stored as parallel primitive arrays instead of a list of ConnectionGene objects.
+// gene i is (innovationNumbers[i], inputNodeIDs[i] -> outputNodeIDs[i], weights[i], bit i of enabled).
+// node IDs follow the same layout as Genome.
+public class CompactGenome {
+
+	// gene arrays of a genome released by its CompactGenomeArena
+	private static final int[] NO_INTS = new int[0];
+	private static final double[] NO_DOUBLES = new double[0];
+	private static final long[] NO_LONGS = new long[0];
+
+	// same as in Genome
+	private static final int INDEX_THRESHOLD = 16;
+
+	public final long ID;
+
+	private final BaseTemplate baseTemplate;
+
+	private int numHiddenNodes;
+
+	public double fitness;
+
+	private int size;
+
+	// package private so CompactGenomeArena can swap them
+	int[] innovationNumbers;
+	int[] inputNodeIDs;
+	int[] outputNodeIDs;
+	double[] weights;
+	long[] enabled;
+
+	// the arena the gene arrays come from, null when they are plain heap arrays
+	private final CompactGenomeArena arena;
+
+	// built by the first layerOf or wouldCreateCycle, then kept up to date by addGene
+	private Topology topology;
+
+	// same as in Genome, built by the first hasConnection on a genome of at least INDEX_THRESHOLD genes, then kept
+	// up to date by addGene
+	private ConnectionIndex connectionIndex;
+
+	// same as in Genome, ActivationFunction ordinal by node ID, null while every node uses the default
+	private byte[] activationFunctions;
+
+	public CompactGenome(long ID, BaseTemplate baseTemplate, int numHiddenNodes) {
+		this(ID, baseTemplate, numHiddenNodes, 8);
+	}
+
+	public CompactGenome(long ID, BaseTemplate baseTemplate, int numHiddenNodes, int capacity) {
+		this.ID = ID;
+		this.baseTemplate = baseTemplate;
+		this.numHiddenNodes = numHiddenNodes;
+		this.fitness = Double.NaN;
+		this.arena = null;
+
+		capacity = Math.max(capacity, 1);
+		this.innovationNumbers = new int[capacity];
+		this.inputNodeIDs = new int[capacity];
+		this.outputNodeIDs = new int[capacity];
+		this.weights = new double[capacity];
+		this.enabled = new long[(capacity + 63) >>> 6];
+		this.size = 0;
+	}
+
+	// see CompactGenomeArena.newGenome
+	CompactGenome(long ID, BaseTemplate baseTemplate, int numHiddenNodes, CompactGenomeArena arena, int capacity) {
+		this.ID = ID;
+		this.baseTemplate = baseTemplate;
+		this.numHiddenNodes = numHiddenNodes;
+		this.fitness = Double.NaN;
+		this.arena = arena;
+
+		arena.acquire(this, capacity);
+		this.size = 0;
+	}
+
+	// unlike new Genome(ID, startingPoint) this copies the genes, so mutating the copy never touches the
+	// starting point
+	public CompactGenome(long ID, CompactGenome startingPoint) {
+		this.ID = ID;
+		this.baseTemplate = startingPoint.baseTemplate;
+		this.numHiddenNodes = startingPoint.numHiddenNodes;
+		this.fitness = Double.NaN;
+		this.arena = null;
+
+		this.size = startingPoint.size;
+		this.innovationNumbers = startingPoint.innovationNumbers.clone();
+		this.inputNodeIDs = startingPoint.inputNodeIDs.clone();
+		this.outputNodeIDs = startingPoint.outputNodeIDs.clone();
+		this.weights = startingPoint.weights.clone();
+		this.enabled = startingPoint.enabled.clone();
+		if (startingPoint.activationFunctions != null) {
+			this.activationFunctions = startingPoint.activationFunctions.clone();
+		}
+		if (startingPoint.connectionIndex != null) {
+			this.connectionIndex = new ConnectionIndex(startingPoint.connectionIndex);
+		}
+	}
+
+	public static CompactGenome fromGenome(Genome geno) {
+		CompactGenome compact = new CompactGenome(geno.ID, geno.getBaseTemplate(), geno.getNumHiddenNodes(),
+				geno.size());
+		for (ConnectionGene cg : geno) {
+			compact.addGene(cg.getInnovationNumber(), cg.getInputNodeID(), cg.getOutputNodeID(),
+					cg.getConnectionWeight(), cg.isEnabled());
+		}
+		for (int nodeID = 0; nodeID < geno.getNumTotalNodes() + 1; nodeID++) {
+			compact.setActivationFunction(nodeID, geno.getActivationFunction(nodeID));
+		}
+		compact.fitness = geno.fitness;
+		return compact;
+	}
+
+	public Genome toGenome() {
+		Genome geno = new Genome(this.ID, this.baseTemplate, this.numHiddenNodes);
+		geno.ensureCapacity(this.size);
+		for (int i = 0; i < this.size; i++) {
+			geno.add(new ConnectionGene(this.innovationNumbers[i], this.inputNodeIDs[i], this.outputNodeIDs[i],
+					this.weights[i], this.isEnabled(i)));
+		}
+		if (this.activationFunctions != null) {
+			for (int nodeID = 0; nodeID < this.activationFunctions.length; nodeID++) {
+				geno.setActivationFunction(nodeID, ActivationFunction.of(this.activationFunctions[nodeID]));
+			}
+		}
+		geno.fitness = this.fitness;
+		return geno;
+	}
+
+	public ActivationFunction getActivationFunction(int nodeID) {
+		if (this.activationFunctions == null || nodeID >= this.activationFunctions.length) {
+			return ActivationFunction.DEFAULT;
+		}
+		return ActivationFunction.of(this.activationFunctions[nodeID]);
+	}
+
+	public void setActivationFunction(int nodeID, ActivationFunction activationFunction) {
+		if (this.activationFunctions == null || nodeID >= this.activationFunctions.length) {
+			if (activationFunction == ActivationFunction.DEFAULT) {
+				return;
+			}
+			int length = Math.max(nodeID + 1, this.getNumTotalNodes() + 1);
+			this.activationFunctions = this.activationFunctions == null ? new byte[length]
+					: Arrays.copyOf(this.activationFunctions, length);
+		}
+		this.activationFunctions[nodeID] = (byte) activationFunction.ordinal();
+	}
+
+	// same as Genome.inheritGenes, straight over the gene arrays of both parents into arrays presized for every
+	// gene of a
+	public void inheritGenes(CompactGenome a, CompactGenome b, AKRandom random) {
+		int size1 = a.size, size2 = b.size;
+		this.ensureCapacity(this.size + size1);
+
+		int[] innovationNumbers1 = a.innovationNumbers, innovationNumbers2 = b.innovationNumbers;
+
+		int maxNodeID = 0;
+
+		int i1 = 0;
+		int i2 = 0;
+		while (i1 < size1 && i2 < size2) {
+			int innov1 = innovationNumbers1[i1], innov2 = innovationNumbers2[i2];
+			if (innov1 == innov2) {
+				boolean fromA = random.nextRandomChance(0.5);
+				boolean enabled1 = a.isEnabled(i1), enabled2 = b.isEnabled(i2);
+				boolean enabled;
+				if (enabled1 && enabled2) {
+					enabled = true;
+				} else if (enabled1 || enabled2) {
+					enabled = random.nextRandomChance(.25);
+				} else {
+					enabled = false;
+				}
+				maxNodeID = Math.max(maxNodeID, fromA ? this.copyGene(a, i1, enabled) : this.copyGene(b, i2, enabled));
+				i1++;
+				i2++;
+			} else if (innov1 < innov2) {
+				maxNodeID = Math.max(maxNodeID, this.copyGene(a, i1, a.isEnabled(i1)));
+				i1++;
+			} else {
+				i2++;
+			}
+		}
+		for (; i1 < size1; i1++) {
+			maxNodeID = Math.max(maxNodeID, this.copyGene(a, i1, a.isEnabled(i1)));
+		}
+		this.numHiddenNodes = maxNodeID - (this.baseTemplate.numInputNodes() + this.baseTemplate.numOutputNodes());
+	}
+
+	// appends gene i of from without a capacity check and returns the larger of its node IDs
+	private int copyGene(CompactGenome from, int i, boolean enabled) {
+		int j = this.size++;
+		int inputNodeID = from.inputNodeIDs[i], outputNodeID = from.outputNodeIDs[i];
+		this.innovationNumbers[j] = from.innovationNumbers[i];
+		this.inputNodeIDs[j] = inputNodeID;
+		this.outputNodeIDs[j] = outputNodeID;
+		this.weights[j] = from.weights[i];
+		this.setEnabled(j, enabled);
+		if (this.topology != null) {
+			this.topology.addEdge(inputNodeID, outputNodeID);
+		}
+		if (this.connectionIndex != null) {
+			this.connectionIndex.add(inputNodeID, outputNodeID);
+		}
+		return Math.max(inputNodeID, outputNodeID);
+	}
+
+	// same as Genome.inheritActivationFunctions
+	public void inheritActivationFunctions(CompactGenome a, CompactGenome b) {
+		this.activationFunctions = null;
+		int numNodeIDsA = a.getBaseTemplate().numInputNodes() + a.getBaseTemplate().numOutputNodes()
+				+ a.getNumHiddenNodes() + 1;
+		if (a.activationFunctions != null) {
+			this.activationFunctions = Arrays.copyOf(a.activationFunctions,
+					Math.min(a.activationFunctions.length, numNodeIDsA));
+		}
+		if (b.activationFunctions != null) {
+			for (int nodeID = numNodeIDsA; nodeID < b.activationFunctions.length; nodeID++) {
+				this.setActivationFunction(nodeID, ActivationFunction.of(b.activationFunctions[nodeID]));
+			}
+		}
+	}
+
+	// the genes and activation functions of startingPoint, this genome has to be empty and big enough
+	void copyGenesFrom(CompactGenome startingPoint) {
+		int size = startingPoint.size;
+		System.arraycopy(startingPoint.innovationNumbers, 0, this.innovationNumbers, 0, size);
+		System.arraycopy(startingPoint.inputNodeIDs, 0, this.inputNodeIDs, 0, size);
+		System.arraycopy(startingPoint.outputNodeIDs, 0, this.outputNodeIDs, 0, size);
+		System.arraycopy(startingPoint.weights, 0, this.weights, 0, size);
+		System.arraycopy(startingPoint.enabled, 0, this.enabled, 0, (size + 63) >>> 6);
+		this.size = size;
+		if (startingPoint.activationFunctions != null) {
+			this.activationFunctions = startingPoint.activationFunctions.clone();
+		}
+		this.topology = null;
+		this.connectionIndex = null;
+	}
+
+	// called when the arena takes the gene arrays back
+	void detach() {
+		this.innovationNumbers = CompactGenome.NO_INTS;
+		this.inputNodeIDs = CompactGenome.NO_INTS;
+		this.outputNodeIDs = CompactGenome.NO_INTS;
+		this.weights = CompactGenome.NO_DOUBLES;
+		this.enabled = CompactGenome.NO_LONGS;
+		this.size = 0;
+		this.activationFunctions = null;
+		this.topology = null;
+		this.connectionIndex = null;
+	}
+
+	public void ensureCapacity(int capacity) {
+		if (capacity <= this.innovationNumbers.length) {
+			return;
+		}
+		if (this.arena != null) {
+			this.arena.grow(this, capacity);
+			return;
+		}
+		capacity = Math.max(capacity, this.innovationNumbers.length * 2);
+		this.innovationNumbers = Arrays.copyOf(this.innovationNumbers, capacity);
+		this.inputNodeIDs = Arrays.copyOf(this.inputNodeIDs, capacity);
+		this.outputNodeIDs = Arrays.copyOf(this.outputNodeIDs, capacity);
+		this.weights = Arrays.copyOf(this.weights, capacity);
+		this.enabled = Arrays.copyOf(this.enabled, (capacity + 63) >>> 6);
+	}
+
+	public void addGene(int innovationNumber, int inputNodeID, int outputNodeID, double connectionWeight,
+			boolean enabled) {
+		this.ensureCapacity(this.size + 1);
+		int i = this.size++;
+		this.innovationNumbers[i] = innovationNumber;
+		this.inputNodeIDs[i] = inputNodeID;
+		this.outputNodeIDs[i] = outputNodeID;
+		this.weights[i] = connectionWeight;
+		this.setEnabled(i, enabled);
+		if (this.topology != null) {
+			this.topology.addEdge(inputNodeID, outputNodeID);
+		}
+		if (this.connectionIndex != null) {
+			this.connectionIndex.add(inputNodeID, outputNodeID);
+		}
+	}
+
+	// copies gene i of another genome onto the end of this one
+	public void addGene(CompactGenome from, int i) {
+		this.addGene(from.innovationNumbers[i], from.inputNodeIDs[i], from.outputNodeIDs[i], from.weights[i],
+				from.isEnabled(i));
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	public int getInnovationNumber(int i) {
+		return this.innovationNumbers[i];
+	}
+
+	public int getInputNodeID(int i) {
+		return this.inputNodeIDs[i];
+	}
+
+	public int getOutputNodeID(int i) {
+		return this.outputNodeIDs[i];
+	}
+
+	public double getConnectionWeight(int i) {
+		return this.weights[i];
+	}
+
+	public void setConnectionWeight(int i, double connectionWeight) {
+		this.weights[i] = connectionWeight;
+	}
+
+	public boolean isEnabled(int i) {
+		return (this.enabled[i >>> 6] & (1L << i)) != 0;
+	}
+
+	public void setEnabled(int i, boolean enabled) {
+		if (enabled) {
+			this.enabled[i >>> 6] |= 1L << i;
+		} else {
+			this.enabled[i >>> 6] &= ~(1L << i);
+		}
+	}
+
+	public boolean hasConnection(int inputNodeID, int outputNodeID) {
+		if (this.connectionIndex == null && this.size >= CompactGenome.INDEX_THRESHOLD) {
+			this.connectionIndex = new ConnectionIndex(this.size);
+			for (int i = 0; i < this.size; i++) {
+				this.connectionIndex.add(this.inputNodeIDs[i], this.outputNodeIDs[i]);
+			}
+		}
+		if (this.connectionIndex != null) {
+			return this.connectionIndex.contains(inputNodeID, outputNodeID);
+		}
+		for (int i = 0; i < this.size; i++) {
+			if (this.inputNodeIDs[i] == inputNodeID && this.outputNodeIDs[i] == outputNodeID) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void calculateNumHiddenNodes() {
+		int numHiddenNodes = 0;
+
+		for (int i = 0; i < this.size; i++) {
+			numHiddenNodes = Math.max(numHiddenNodes, this.inputNodeIDs[i]);
+			numHiddenNodes = Math.max(numHiddenNodes, this.outputNodeIDs[i]);
+		}
+		numHiddenNodes -= this.baseTemplate.numInputNodes() + this.baseTemplate.numOutputNodes();
+
+		this.numHiddenNodes = numHiddenNodes;
+	}
+
+	// same as Genome.cleanup(). insertion sort is stable like List.sort and linear on the nearly sorted
+	// arrays a mutation leaves behind
+	public void cleanup() {
+		for (int i = 1; i < this.size; i++) {
+			int innov = this.innovationNumbers[i];
+			if (innov >= this.innovationNumbers[i - 1]) {
+				continue;
+			}
+			int in = this.inputNodeIDs[i], out = this.outputNodeIDs[i];
+			double weight = this.weights[i];
+			boolean en = this.isEnabled(i);
+
+			int j = i - 1;
+			for (; j >= 0 && this.innovationNumbers[j] > innov; j--) {
+				this.innovationNumbers[j + 1] = this.innovationNumbers[j];
+				this.inputNodeIDs[j + 1] = this.inputNodeIDs[j];
+				this.outputNodeIDs[j + 1] = this.outputNodeIDs[j];
+				this.weights[j + 1] = this.weights[j];
+				this.setEnabled(j + 1, this.isEnabled(j));
+			}
+			this.innovationNumbers[j + 1] = innov;
+			this.inputNodeIDs[j + 1] = in;
+			this.outputNodeIDs[j + 1] = out;
+			this.weights[j + 1] = weight;
+			this.setEnabled(j + 1, en);
+		}
+		this.calculateNumHiddenNodes();
+	}
+
+	/**
+	 * @return the id of the new hidden node
+	 */
+	public int addNewHiddenNode() {
+		int newNodeID = this.getNumTotalNodes();
+		if (!this.baseTemplate.hasBias()) {
+			newNodeID++;
+		}
+		this.numHiddenNodes++;
+
+		return newNodeID;
+	}
+
+	private Topology topology() {
+		int maxNodeID = this.baseTemplate.numInputNodes() + this.baseTemplate.numOutputNodes() + this.numHiddenNodes;
+		if (this.topology == null) {
+			this.topology = new Topology(this.baseTemplate.numInputNodes(), maxNodeID + 1);
+			for (int i = 0; i < this.size; i++) {
+				this.topology.addEdgeUnordered(this.inputNodeIDs[i], this.outputNodeIDs[i]);
+			}
+			this.topology.sort();
+		}
+		this.topology.ensureNode(maxNodeID);
+		return this.topology;
+	}
+
+	// same as Genome.wouldCreateCycle
+	public boolean wouldCreateCycle(int inputNodeID, int outputNodeID) {
+		return this.topology().wouldCreateCycle(inputNodeID, outputNodeID);
+	}
+
+	public boolean isAcyclic() {
+		return this.topology().isAcyclic();
+	}
+
+	public int[] topologicalOrder() {
+		return this.topology().order();
+	}
+
+	// same as Genome.sampleUnusedConnection
+	public long sampleUnusedConnection(Genome.ConnectionFilter valid, AKRandom random) {
+		int maxNodeID = this.baseTemplate.numInputNodes() + this.baseTemplate.numOutputNodes() + this.numHiddenNodes;
+		int firstOutputNodeID = this.baseTemplate.numInputNodes() + 1;
+		long chosen = -1;
+		int count = 0;
+		for (int inputNodeID = 1; inputNodeID <= maxNodeID; inputNodeID++) {
+			for (int outputNodeID = firstOutputNodeID; outputNodeID <= maxNodeID; outputNodeID++) {
+				if (!this.hasConnection(inputNodeID, outputNodeID) && valid.test(inputNodeID, outputNodeID)) {
+					// the count-th candidate replaces the chosen one with probability 1 / count
+					count++;
+					if (random.nextRandomNumber(count) < 1) {
+						chosen = ConnectionIndex.key(inputNodeID, outputNodeID);
+					}
+				}
+			}
+		}
+		return chosen;
+	}
+
+	// same as Genome.layerOf
+	public int layerOf(int nodeID) {
+		Topology topology = this.topology();
+		if (topology.isAcyclic()) {
+			return topology.depthOf(nodeID);
+		}
+		int layer = 0;
+		if (nodeID > this.baseTemplate.numInputNodes()) {
+			layer = 2;
+		}
+		if (nodeID > this.baseTemplate.numInputNodes() + this.baseTemplate.numOutputNodes()) {
+			layer = 1;
+		}
+		return layer;
+	}
+
+	public BaseTemplate getBaseTemplate() {
+		return this.baseTemplate;
+	}
+
+	public void setNumHiddenNodes(int numHiddenNodes) {
+		this.numHiddenNodes = numHiddenNodes;
+	}
+
+	public int getNumHiddenNodes() {
+		return this.numHiddenNodes;
+	}
+
+	public int getNumTotalNodes() {
+		return this.baseTemplate.numInputNodes() + this.numHiddenNodes + this.baseTemplate.numOutputNodes()
+				+ (this.baseTemplate.hasBias() ? 1 : 0);
+	}
+
+	@Override
+	public String toString() {
+		return "CompactGenome ID: " + this.ID + ", hidden nodes: " + this.numHiddenNodes + ", connections: "
+				+ this.size + '\n' + "Fitness: " + this.fitness + '\n';
+	}
+
+	@Override
+	public boolean equals(Object another) {
+		if (another instanceof CompactGenome) {
+			if (((CompactGenome) another).ID == this.ID) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) this.ID;
+	}
+}
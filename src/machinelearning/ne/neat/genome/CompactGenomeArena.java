@@ -0,0 +1,139 @@
+package machinelearning.ne.neat.genome;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+// double buffered store for the gene arrays of CompactGenome offspring, so a generational loop stops producing
+// garbage once the buffers of two generations exist.
+// call nextGeneration() before breeding every generation: the genomes allocated before the previous call (the
+// generation before the current parents) are released and their arrays are handed to the new offspring.
+// a genome that has to live longer, like an elite carried over, is copied with copy() every generation it survives.
+// a released genome is empty and must not be used anymore. an arena is not thread safe.
+public class CompactGenomeArena {
+
+	// capacities are powers of two from 8 genes on
+	private static final int MIN_SIZE_CLASS = 3;
+
+	private final SizeClass[] sizeClasses = new SizeClass[32];
+
+	// offspring of the generation being bred and the generation before it (the parents)
+	private List<CompactGenome> current = new ArrayList<>();
+	private List<CompactGenome> previous = new ArrayList<>();
+
+	private long numAllocatedBuffers = 0;
+	private long numRecycledBuffers = 0;
+
+	public CompactGenome newGenome(long ID, BaseTemplate baseTemplate, int numHiddenNodes, int capacity) {
+		CompactGenome geno = new CompactGenome(ID, baseTemplate, numHiddenNodes, this, capacity);
+		this.current.add(geno);
+		return geno;
+	}
+
+	// same as new CompactGenome(ID, startingPoint) with the copy in this arena
+	public CompactGenome copy(long ID, CompactGenome startingPoint) {
+		CompactGenome geno = this.newGenome(ID, startingPoint.getBaseTemplate(), startingPoint.getNumHiddenNodes(),
+				startingPoint.size());
+		geno.copyGenesFrom(startingPoint);
+		return geno;
+	}
+
+	// releases the generation before the parents, the genomes allocated from now on are the next generation
+	public void nextGeneration() {
+		for (CompactGenome geno : this.previous) {
+			this.release(geno);
+		}
+		this.previous.clear();
+		List<CompactGenome> parents = this.current;
+		this.current = this.previous;
+		this.previous = parents;
+	}
+
+	// hands the arrays of geno back and leaves it empty
+	private void release(CompactGenome geno) {
+		this.recycle(geno.innovationNumbers, geno.inputNodeIDs, geno.outputNodeIDs, geno.weights, geno.enabled);
+		geno.detach();
+	}
+
+	// gives geno arrays of at least capacity genes with its current genes in them
+	void grow(CompactGenome geno, int capacity) {
+		int[] innovationNumbers = geno.innovationNumbers, inputNodeIDs = geno.inputNodeIDs,
+				outputNodeIDs = geno.outputNodeIDs;
+		double[] weights = geno.weights;
+		long[] enabled = geno.enabled;
+
+		this.acquire(geno, capacity);
+		int size = geno.size();
+		System.arraycopy(innovationNumbers, 0, geno.innovationNumbers, 0, size);
+		System.arraycopy(inputNodeIDs, 0, geno.inputNodeIDs, 0, size);
+		System.arraycopy(outputNodeIDs, 0, geno.outputNodeIDs, 0, size);
+		System.arraycopy(weights, 0, geno.weights, 0, size);
+		System.arraycopy(enabled, 0, geno.enabled, 0, (size + 63) >>> 6);
+
+		// nobody else sees the old arrays, so they can be reused right away
+		if (innovationNumbers.length > 0) {
+			this.recycle(innovationNumbers, inputNodeIDs, outputNodeIDs, weights, enabled);
+		}
+	}
+
+	// sets the arrays of geno to recycled or new ones of at least capacity genes, their contents are undefined
+	void acquire(CompactGenome geno, int capacity) {
+		int sizeClass = Math.max(CompactGenomeArena.MIN_SIZE_CLASS,
+				32 - Integer.numberOfLeadingZeros(Math.max(capacity, 1) - 1));
+		SizeClass buffers = this.sizeClasses[sizeClass];
+		if (buffers != null && !buffers.innovationNumbers.isEmpty()) {
+			geno.innovationNumbers = buffers.innovationNumbers.pop();
+			geno.inputNodeIDs = buffers.inputNodeIDs.pop();
+			geno.outputNodeIDs = buffers.outputNodeIDs.pop();
+			geno.weights = buffers.weights.pop();
+			geno.enabled = buffers.enabled.pop();
+			this.numRecycledBuffers++;
+		} else {
+			int length = 1 << sizeClass;
+			geno.innovationNumbers = new int[length];
+			geno.inputNodeIDs = new int[length];
+			geno.outputNodeIDs = new int[length];
+			geno.weights = new double[length];
+			geno.enabled = new long[(length + 63) >>> 6];
+			this.numAllocatedBuffers++;
+		}
+	}
+
+	private void recycle(int[] innovationNumbers, int[] inputNodeIDs, int[] outputNodeIDs, double[] weights,
+			long[] enabled) {
+		int sizeClass = Integer.numberOfTrailingZeros(innovationNumbers.length);
+		SizeClass buffers = this.sizeClasses[sizeClass];
+		if (buffers == null) {
+			buffers = new SizeClass();
+			this.sizeClasses[sizeClass] = buffers;
+		}
+		buffers.innovationNumbers.push(innovationNumbers);
+		buffers.inputNodeIDs.push(inputNodeIDs);
+		buffers.outputNodeIDs.push(outputNodeIDs);
+		buffers.weights.push(weights);
+		buffers.enabled.push(enabled);
+	}
+
+	// number of gene array sets that had to be allocated instead of recycled
+	public long getNumAllocatedBuffers() {
+		return this.numAllocatedBuffers;
+	}
+
+	public long getNumRecycledBuffers() {
+		return this.numRecycledBuffers;
+	}
+
+	// genomes that were allocated and not released yet
+	public int getNumLiveGenomes() {
+		return this.current.size() + this.previous.size();
+	}
+
+	private static class SizeClass {
+		final ArrayDeque<int[]> innovationNumbers = new ArrayDeque<>();
+		final ArrayDeque<int[]> inputNodeIDs = new ArrayDeque<>();
+		final ArrayDeque<int[]> outputNodeIDs = new ArrayDeque<>();
+		final ArrayDeque<double[]> weights = new ArrayDeque<>();
+		final ArrayDeque<long[]> enabled = new ArrayDeque<>();
+	}
+
+}
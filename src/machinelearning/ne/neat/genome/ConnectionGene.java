@@ -10,6 +10,10 @@ public class ConnectionGene {
 
 	private boolean enabled;
 
+	// token of the genome that may change this gene in place, clones share genes until they write them.
+	// see Genome.getGeneForWrite
+	Object owner;
+
 	public ConnectionGene(int innovationNumber, int inputNodeID, int outputNodeID, double connectionWeight,
 			boolean enabled) {
 		this.innovationNumber = innovationNumber;
@@ -51,6 +55,8 @@ public class ConnectionGene {
 		return this.enabled;
 	}
 
+	// a gene taken from Genome.get may be shared with clones of the genome, get it from Genome.getGeneForWrite
+	// before changing it
 	public void setConnectionWeight(double connectionWeight) {
 		this.connectionWeight = connectionWeight;
 	}
@@ -0,0 +1,125 @@
+package machinelearning.ne.neat.genome;
+
+import java.util.Arrays;
+
+// structural index of a Genome or CompactGenome: how many genes connect each (inputNodeID -> outputNodeID).
+// open addressing over keys packed into a long like InnovationRegistry, so lookups don't box or allocate.
+// a key whose count drops to 0 keeps its slot until the next resize.
+class ConnectionIndex {
+
+	private static final long EMPTY = -1L;
+
+	private long[] keys;
+	private int[] counts;
+
+	// used slots, including the ones with a count of 0
+	private int used;
+
+	ConnectionIndex(int expectedSize) {
+		int capacity = 16;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		this.keys = new long[capacity];
+		this.counts = new int[capacity];
+		Arrays.fill(this.keys, ConnectionIndex.EMPTY);
+	}
+
+	ConnectionIndex(ConnectionIndex another) {
+		this.keys = another.keys.clone();
+		this.counts = another.counts.clone();
+		this.used = another.used;
+	}
+
+	static long key(int inputNodeID, int outputNodeID) {
+		return ((long) inputNodeID << 32) | (outputNodeID & 0xFFFFFFFFL);
+	}
+
+	private int slot(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash >>> 32) & (this.keys.length - 1);
+	}
+
+	boolean contains(int inputNodeID, int outputNodeID) {
+		long key = ConnectionIndex.key(inputNodeID, outputNodeID);
+		int mask = this.keys.length - 1;
+		for (int i = this.slot(key);; i = (i + 1) & mask) {
+			long k = this.keys[i];
+			if (k == key) {
+				return this.counts[i] > 0;
+			}
+			if (k == ConnectionIndex.EMPTY) {
+				return false;
+			}
+		}
+	}
+
+	void add(ConnectionGene cg) {
+		this.add(cg.getInputNodeID(), cg.getOutputNodeID());
+	}
+
+	void add(int inputNodeID, int outputNodeID) {
+		if ((this.used + 1) * 4 > this.keys.length * 3) {
+			this.resize();
+		}
+		long key = ConnectionIndex.key(inputNodeID, outputNodeID);
+		int mask = this.keys.length - 1;
+		for (int i = this.slot(key);; i = (i + 1) & mask) {
+			if (this.keys[i] == key) {
+				this.counts[i]++;
+				return;
+			}
+			if (this.keys[i] == ConnectionIndex.EMPTY) {
+				this.keys[i] = key;
+				this.counts[i] = 1;
+				this.used++;
+				return;
+			}
+		}
+	}
+
+	void remove(ConnectionGene cg) {
+		long key = ConnectionIndex.key(cg.getInputNodeID(), cg.getOutputNodeID());
+		int mask = this.keys.length - 1;
+		for (int i = this.slot(key);; i = (i + 1) & mask) {
+			if (this.keys[i] == key) {
+				this.counts[i]--;
+				return;
+			}
+			if (this.keys[i] == ConnectionIndex.EMPTY) {
+				return;
+			}
+		}
+	}
+
+	// drops the keys with a count of 0 and doubles the table if it is still more than half full
+	private void resize() {
+		long[] oldKeys = this.keys;
+		int[] oldCounts = this.counts;
+		int live = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != ConnectionIndex.EMPTY && oldCounts[i] > 0) {
+				live++;
+			}
+		}
+		int capacity = live * 2 > oldKeys.length ? oldKeys.length * 2 : oldKeys.length;
+		this.keys = new long[capacity];
+		this.counts = new int[capacity];
+		Arrays.fill(this.keys, ConnectionIndex.EMPTY);
+		this.used = 0;
+		int mask = capacity - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldKeys[j] == ConnectionIndex.EMPTY || oldCounts[j] <= 0) {
+				continue;
+			}
+			int i = this.slot(oldKeys[j]);
+			while (this.keys[i] != ConnectionIndex.EMPTY) {
+				i = (i + 1) & mask;
+			}
+			this.keys[i] = oldKeys[j];
+			this.counts[i] = oldCounts[j];
+			this.used++;
+		}
+	}
+
+}
@@ -1,14 +1,22 @@
 package machinelearning.ne.neat.genome;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import data.tuple.Tuple2D;
+import math.AKRandom;
 
 public class Genome extends ArrayList<ConnectionGene> {
 
 	private static final long serialVersionUID = -5784317383291473781L;
 
+	// owner of genes added with addShared, no genome ever writes them in place
+	private static final Object SHARED = new Object();
+
+	// genomes with fewer genes than this scan the list in hasConnection instead of building a ConnectionIndex
+	private static final int INDEX_THRESHOLD = 16;
+
 	public final long ID;
 
 	private final BaseTemplate baseTemplate;
@@ -27,6 +35,26 @@ public class Genome extends ArrayList<ConnectionGene> {
 
 	public double fitness = 0.0;
 
+	// ID of the species this genome was bred from, -1 if it has none (e.g. generated randomly)
+	public long parentSpeciesID = -1;
+
+	// ActivationFunction ordinal of every node by node ID, null as long as every node uses the default
+	private byte[] activationFunctions;
+
+	// genes whose owner is this token belong to this genome alone, every other gene may be shared with clones
+	// and is copied by getGeneForWrite before it changes
+	private Object geneOwner = new Object();
+
+	// (inputNodeID, outputNodeID) lookup for hasConnection. it is kept up to date by add, set and cleanup and is
+	// only trusted while indexModCount == modCount, any other change of the list makes the next lookup rebuild it
+	private transient ConnectionIndex connectionIndex;
+	private transient int indexModCount;
+
+	// connection graph with an incremental topological order for layerOf and wouldCreateCycle, kept up to date
+	// the same way as connectionIndex
+	private transient Topology topology;
+	private transient int topologyModCount;
+
 	/*
 	 * public Genome(BaseTemplate baseTemplate, int numHiddenNodes) { super();
 	 * this.baseTemplate = baseTemplate; this.numHiddenNodes = numHiddenNodes; //
@@ -50,12 +78,263 @@ public class Genome extends ArrayList<ConnectionGene> {
 		this.numHiddenNodes = startingPoint.numHiddenNodes;
 
 		this.addAll(startingPoint);
+		// the genes are shared now, so neither genome may write them in place anymore
+		startingPoint.geneOwner = new Object();
+		ConnectionIndex index = startingPoint.validIndex();
+		if (index != null) {
+			this.connectionIndex = new ConnectionIndex(index);
+			this.indexModCount = this.modCount;
+		}
+		if (startingPoint.activationFunctions != null) {
+			this.activationFunctions = startingPoint.activationFunctions.clone();
+		}
 
 		this.ID = ID;
 		this.fitness = Double.NaN;
 	}
 
+	// unlike Genome(ID, startingPoint) the copy gets its own genes up front instead of on the first write
+	public Genome deepCopy(long ID) {
+		Genome copy = new Genome(ID, this.baseTemplate, this.numHiddenNodes);
+		copy.ensureCapacity(this.size());
+		for (ConnectionGene cg : this) {
+			copy.add(cg.clone());
+		}
+		if (this.activationFunctions != null) {
+			copy.activationFunctions = this.activationFunctions.clone();
+		}
+		return copy;
+	}
+
+	// new genes become owned by the genome they are added to
+	@Override
+	public boolean add(ConnectionGene cg) {
+		if (cg.owner == null) {
+			cg.owner = this.geneOwner;
+		}
+		ConnectionIndex index = this.validIndex();
+		Topology topology = this.validTopology();
+		super.add(cg);
+		this.added(index, topology, cg);
+		return true;
+	}
+
+	@Override
+	public void add(int position, ConnectionGene cg) {
+		if (cg.owner == null) {
+			cg.owner = this.geneOwner;
+		}
+		ConnectionIndex index = this.validIndex();
+		Topology topology = this.validTopology();
+		super.add(position, cg);
+		this.added(index, topology, cg);
+	}
+
+	// for a gene that other genomes may hold as well, it is copied before this genome writes it
+	public void addShared(ConnectionGene cg) {
+		if (cg.owner == null) {
+			cg.owner = Genome.SHARED;
+		}
+		ConnectionIndex index = this.validIndex();
+		Topology topology = this.validTopology();
+		super.add(cg);
+		this.added(index, topology, cg);
+	}
+
+	@Override
+	public ConnectionGene set(int position, ConnectionGene cg) {
+		ConnectionGene old = super.set(position, cg);
+		ConnectionIndex index = this.validIndex();
+		if (old.getInputNodeID() != cg.getInputNodeID() || old.getOutputNodeID() != cg.getOutputNodeID()) {
+			if (index != null) {
+				index.remove(old);
+				index.add(cg);
+			}
+			// removing an edge can't be done incrementally
+			this.topology = null;
+		}
+		return old;
+	}
+
+	// index and topology were valid (or null) before cg was added
+	private void added(ConnectionIndex index, Topology topology, ConnectionGene cg) {
+		if (index != null) {
+			index.add(cg);
+			this.indexModCount = this.modCount;
+		}
+		if (topology != null) {
+			topology.addEdge(cg.getInputNodeID(), cg.getOutputNodeID());
+			this.topologyModCount = this.modCount;
+		}
+	}
+
+	private Topology validTopology() {
+		return this.topology != null && this.topologyModCount == this.modCount ? this.topology : null;
+	}
+
+	private Topology topology() {
+		Topology topology = this.validTopology();
+		if (topology == null) {
+			topology = new Topology(this.baseTemplate.numInputNodes(), this.getMaxNodeID() + 1);
+			for (ConnectionGene cg : this) {
+				topology.addEdgeUnordered(cg.getInputNodeID(), cg.getOutputNodeID());
+			}
+			topology.sort();
+			this.topology = topology;
+			this.topologyModCount = this.modCount;
+		}
+		topology.ensureNode(this.getMaxNodeID());
+		return topology;
+	}
+
+	private int getMaxNodeID() {
+		return this.baseTemplate.numInputNodes() + this.baseTemplate.numOutputNodes() + this.numHiddenNodes;
+	}
+
+	// true if a connection inputNodeID -> outputNodeID would close a cycle with the existing (enabled or
+	// disabled) connections, see Topology
+	public boolean wouldCreateCycle(int inputNodeID, int outputNodeID) {
+		return this.topology().wouldCreateCycle(inputNodeID, outputNodeID);
+	}
+
+	public boolean isAcyclic() {
+		return this.topology().isAcyclic();
+	}
+
+	// every node ID up to the last hidden node, sources before the nodes they connect to as long as the genome
+	// is acyclic. layerOf can be used to group the nodes that can be evaluated together
+	public int[] topologicalOrder() {
+		return this.topology().order();
+	}
+
+	private ConnectionIndex validIndex() {
+		return this.connectionIndex != null && this.indexModCount == this.modCount ? this.connectionIndex : null;
+	}
+
+	// null for small genomes, which are faster to scan
+	private ConnectionIndex index() {
+		ConnectionIndex index = this.validIndex();
+		if (index == null && this.size() >= Genome.INDEX_THRESHOLD) {
+			index = new ConnectionIndex(this.size());
+			for (ConnectionGene cg : this) {
+				index.add(cg);
+			}
+			this.connectionIndex = index;
+			this.indexModCount = this.modCount;
+		}
+		return index;
+	}
+
+	// the gene at index, copied first if it may be shared, so it can be changed without touching other genomes
+	public ConnectionGene getGeneForWrite(int index) {
+		ConnectionGene cg = this.get(index);
+		if (cg.owner != this.geneOwner) {
+			cg = cg.clone();
+			cg.owner = this.geneOwner;
+			this.set(index, cg);
+		}
+		return cg;
+	}
+
+	public ActivationFunction getActivationFunction(int nodeID) {
+		if (this.activationFunctions == null || nodeID >= this.activationFunctions.length) {
+			return ActivationFunction.DEFAULT;
+		}
+		return ActivationFunction.of(this.activationFunctions[nodeID]);
+	}
+
+	public void setActivationFunction(int nodeID, ActivationFunction activationFunction) {
+		if (this.activationFunctions == null || nodeID >= this.activationFunctions.length) {
+			if (activationFunction == ActivationFunction.DEFAULT) {
+				return;
+			}
+			int length = Math.max(nodeID + 1, this.getNumTotalNodes() + 1);
+			this.activationFunctions = this.activationFunctions == null ? new byte[length]
+					: Arrays.copyOf(this.activationFunctions, length);
+		}
+		this.activationFunctions[nodeID] = (byte) activationFunction.ordinal();
+	}
+
+	// true when some node doesn't use the default activation function
+	public boolean hasActivationFunctions() {
+		if (this.activationFunctions != null) {
+			for (byte activationFunction : this.activationFunctions) {
+				if (activationFunction != 0) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	// the merge of NEATTrainer.crossover in one walk over both parents: fills this empty genome with the genes of a
+	// (the more fit parent) and the matching genes of b. the child comes out sorted when the parents are, so it
+	// doesn't need cleanup(), and its number of hidden nodes is set like calculateNumHiddenNodes() would
+	public void inheritGenes(Genome a, Genome b, AKRandom random) {
+		int size1 = a.size(), size2 = b.size();
+		this.ensureCapacity(this.size() + size1);
+
+		int maxNodeID = 0;
+
+		int i1 = 0;
+		int i2 = 0;
+		while (i1 < size1 && i2 < size2) {
+			ConnectionGene g1 = a.get(i1);
+			ConnectionGene g2 = b.get(i2);
+			int innov1 = g1.getInnovationNumber(), innov2 = g2.getInnovationNumber();
+			ConnectionGene g;
+			if (innov1 == innov2) {
+				// pick random parent for weight
+				g = random.nextRandomChance(0.5) ? g1.clone() : g2.clone();
+				if (g1.isEnabled() && g2.isEnabled()) {
+					g.setEnabled(true);
+				} else if (g1.isEnabled() || g2.isEnabled()) {
+					g.setEnabled(random.nextRandomChance(.25));
+				} else {
+					g.setEnabled(false);
+				}
+				i1++;
+				i2++;
+			} else if (innov1 < innov2) {
+				g = g1.clone();
+				i1++;
+			} else {
+				// dont inherit from unfit parent
+				i2++;
+				continue;
+			}
+			this.add(g);
+			maxNodeID = Math.max(maxNodeID, Math.max(g.getInputNodeID(), g.getOutputNodeID()));
+		}
+		for (; i1 < size1; i1++) {
+			ConnectionGene g = a.get(i1).clone();
+			this.add(g);
+			maxNodeID = Math.max(maxNodeID, Math.max(g.getInputNodeID(), g.getOutputNodeID()));
+		}
+		this.numHiddenNodes = maxNodeID - (this.baseTemplate.numInputNodes() + this.baseTemplate.numOutputNodes());
+	}
+
+	// nodes that the fitter parent a has get its activation functions, the hidden nodes only b has get those of b
+	public void inheritActivationFunctions(Genome a, Genome b) {
+		this.activationFunctions = null;
+		int numNodeIDsA = a.getBaseTemplate().numInputNodes() + a.getBaseTemplate().numOutputNodes()
+				+ a.getNumHiddenNodes() + 1;
+		if (a.activationFunctions != null) {
+			this.activationFunctions = Arrays.copyOf(a.activationFunctions,
+					Math.min(a.activationFunctions.length, numNodeIDsA));
+		}
+		if (b.activationFunctions != null) {
+			for (int nodeID = numNodeIDsA; nodeID < b.activationFunctions.length; nodeID++) {
+				this.setActivationFunction(nodeID, ActivationFunction.of(b.activationFunctions[nodeID]));
+			}
+		}
+	}
+
 	public boolean hasConnection(int inputNodeID, int outputNodeID) {
+		ConnectionIndex index = this.index();
+		if (index != null) {
+			return index.contains(inputNodeID, outputNodeID);
+		}
 		for (ConnectionGene cg : this) {
 			if (cg.getInputNodeID() == inputNodeID && cg.getOutputNodeID() == outputNodeID) {
 				return true;
@@ -81,10 +360,45 @@ public class Genome extends ArrayList<ConnectionGene> {
 	}
 
 	public void cleanup() {
+		// sorting doesn't change which connections exist
+		ConnectionIndex index = this.validIndex();
+		Topology topology = this.validTopology();
 		this.sort((o1, o2) -> o1.getInnovationNumber() - o2.getInnovationNumber());
+		if (index != null) {
+			this.indexModCount = this.modCount;
+		}
+		if (topology != null) {
+			this.topologyModCount = this.modCount;
+		}
 		this.calculateNumHiddenNodes();
 	}
 
+	public interface ConnectionFilter {
+		public abstract boolean test(int inputNodeID, int outputNodeID);
+	}
+
+	// picks uniformly among the pairs of a non bias node and a non input node that aren't connected yet and pass
+	// valid, by reservoir sampling in one pass over the pairs, so it can't fail the way rejection sampling
+	// does on dense genomes. returns inputNodeID << 32 | outputNodeID, or -1 if there is no such pair
+	public long sampleUnusedConnection(ConnectionFilter valid, AKRandom random) {
+		int maxNodeID = this.baseTemplate.numInputNodes() + this.baseTemplate.numOutputNodes() + this.numHiddenNodes;
+		int firstOutputNodeID = this.baseTemplate.numInputNodes() + 1;
+		long chosen = -1;
+		int count = 0;
+		for (int inputNodeID = 1; inputNodeID <= maxNodeID; inputNodeID++) {
+			for (int outputNodeID = firstOutputNodeID; outputNodeID <= maxNodeID; outputNodeID++) {
+				if (!this.hasConnection(inputNodeID, outputNodeID) && valid.test(inputNodeID, outputNodeID)) {
+					// the count-th candidate replaces the chosen one with probability 1 / count
+					count++;
+					if (random.nextRandomNumber(count) < 1) {
+						chosen = ConnectionIndex.key(inputNodeID, outputNodeID);
+					}
+				}
+			}
+		}
+		return chosen;
+	}
+
 	/**
 	 * @return the id of the new hidden node
 	 */
@@ -98,7 +412,14 @@ public class Genome extends ArrayList<ConnectionGene> {
 		return newNodeID;
 	}
 
+	// 0 for the bias and the inputs, otherwise 1 + the layer of the deepest node connecting to it (at least 1),
+	// so a connection from a node to one in a lower or the same layer may still be fine. a genome with a cycle
+	// falls back to inputs 0, hidden 1, outputs 2
 	public int layerOf(int nodeID) {
+		Topology topology = this.topology();
+		if (topology.isAcyclic()) {
+			return topology.depthOf(nodeID);
+		}
 		int layer = 0;
 		if (nodeID > this.baseTemplate.numInputNodes()) {
 			layer = 2;
@@ -0,0 +1,81 @@
+package machinelearning.ne.neat.genome;
+
+import java.nio.ByteBuffer;
+
+import machinelearning.distributed.WireCodec;
+
+// header: long ID, byte hasBias, int numInputNodes, int numOutputNodes, int numHiddenNodes, int numGenes
+// gene: int innovation number with the sign bit set when disabled, int input node, int output node, double weight
+// after the genes: int numNodeIDs (0 when every node uses the default) and a byte ActivationFunction per node ID
+public class GenomeWireFormat implements WireCodec<Genome> {
+
+	private static final int HEADER_SIZE = 8 + 1 + 4 + 4 + 4 + 4;
+	private static final int GENE_SIZE = 4 + 4 + 4 + 8;
+
+	// decoded genomes of the same shape share one template
+	private BaseTemplate lastTemplate;
+
+	@Override
+	public int encodedSize(Genome geno) {
+		return GenomeWireFormat.HEADER_SIZE + GenomeWireFormat.GENE_SIZE * geno.size() + 4
+				+ GenomeWireFormat.numNodeIDs(geno);
+	}
+
+	@Override
+	public void encode(Genome geno, ByteBuffer buffer) {
+		BaseTemplate template = geno.getBaseTemplate();
+		buffer.putLong(geno.ID);
+		buffer.put((byte) (template.hasBias() ? 1 : 0));
+		buffer.putInt(template.numInputNodes());
+		buffer.putInt(template.numOutputNodes());
+		buffer.putInt(geno.getNumHiddenNodes());
+		buffer.putInt(geno.size());
+		for (ConnectionGene cg : geno) {
+			buffer.putInt(cg.isEnabled() ? cg.getInnovationNumber() : cg.getInnovationNumber() | 0x80000000);
+			buffer.putInt(cg.getInputNodeID());
+			buffer.putInt(cg.getOutputNodeID());
+			buffer.putDouble(cg.getConnectionWeight());
+		}
+		int numNodeIDs = GenomeWireFormat.numNodeIDs(geno);
+		buffer.putInt(numNodeIDs);
+		for (int nodeID = 0; nodeID < numNodeIDs; nodeID++) {
+			buffer.put((byte) geno.getActivationFunction(nodeID).ordinal());
+		}
+	}
+
+	private static int numNodeIDs(Genome geno) {
+		if (!geno.hasActivationFunctions()) {
+			return 0;
+		}
+		BaseTemplate template = geno.getBaseTemplate();
+		return template.numInputNodes() + template.numOutputNodes() + geno.getNumHiddenNodes() + 1;
+	}
+
+	@Override
+	public synchronized Genome decode(ByteBuffer buffer) {
+		long ID = buffer.getLong();
+		boolean hasBias = buffer.get() != 0;
+		int numInputNodes = buffer.getInt(), numOutputNodes = buffer.getInt();
+		BaseTemplate template = this.lastTemplate;
+		if (template == null || template.hasBias() != hasBias || template.numInputNodes() != numInputNodes
+				|| template.numOutputNodes() != numOutputNodes) {
+			template = new BaseTemplate(hasBias, numInputNodes, numOutputNodes);
+			this.lastTemplate = template;
+		}
+		Genome geno = new Genome(ID, template, buffer.getInt());
+		int numGenes = buffer.getInt();
+		geno.ensureCapacity(numGenes);
+		for (int i = 0; i < numGenes; i++) {
+			int innovation = buffer.getInt();
+			int inputNodeID = buffer.getInt(), outputNodeID = buffer.getInt();
+			double weight = buffer.getDouble();
+			geno.add(new ConnectionGene(innovation & 0x7FFFFFFF, inputNodeID, outputNodeID, weight, innovation >= 0));
+		}
+		int numNodeIDs = buffer.getInt();
+		for (int nodeID = 0; nodeID < numNodeIDs; nodeID++) {
+			geno.setActivationFunction(nodeID, ActivationFunction.of(buffer.get()));
+		}
+		return geno;
+	}
+
+}
@@ -0,0 +1,253 @@
+package machinelearning.ne.neat.genome;
+
+import java.util.Arrays;
+
+// the connection graph of a genome (disabled connections included, they can be enabled again) with a
+// topological order that is kept up to date edge by edge (Pearce and Kelly's dynamic topological sort).
+// adding an edge that already agrees with the order is O(1), otherwise only the nodes between the two
+// endpoints in the order that are reachable from them are visited and reordered.
+// once an edge closes a cycle the order is dropped and cycle checks fall back to a plain search.
+class Topology {
+
+	private final int numInputNodes;
+
+	private int numNodes;
+
+	private int[][] successors;
+	private int[] numSuccessors;
+	private int[][] predecessors;
+	private int[] numPredecessors;
+
+	// position of every node in the topological order, a permutation of 0..numNodes-1
+	private int[] position;
+
+	private boolean acyclic = true;
+
+	// longest path from a node without predecessors, null when an edge was added since they were calculated
+	private int[] depths;
+
+	// scratch space of the searches, a node is marked when mark[node] == epoch
+	private int[] mark;
+	private int epoch;
+	private int[] stack;
+	private int[] forward;
+	private int[] backward;
+
+	Topology(int numInputNodes, int numNodes) {
+		this.numInputNodes = numInputNodes;
+		this.numNodes = 0;
+		this.successors = new int[0][];
+		this.numSuccessors = new int[0];
+		this.predecessors = new int[0][];
+		this.numPredecessors = new int[0];
+		this.position = new int[0];
+		this.mark = new int[0];
+		this.ensureNode(numNodes - 1);
+	}
+
+	// adds nodes up to nodeID at the end of the order
+	void ensureNode(int nodeID) {
+		if (nodeID < this.numNodes) {
+			return;
+		}
+		int numNodes = nodeID + 1;
+		if (numNodes > this.position.length) {
+			int capacity = Math.max(numNodes, this.position.length * 2);
+			this.successors = Arrays.copyOf(this.successors, capacity);
+			this.numSuccessors = Arrays.copyOf(this.numSuccessors, capacity);
+			this.predecessors = Arrays.copyOf(this.predecessors, capacity);
+			this.numPredecessors = Arrays.copyOf(this.numPredecessors, capacity);
+			this.position = Arrays.copyOf(this.position, capacity);
+			this.mark = Arrays.copyOf(this.mark, capacity);
+			this.stack = new int[capacity];
+			this.forward = new int[capacity];
+			this.backward = new int[capacity];
+		}
+		for (int node = this.numNodes; node < numNodes; node++) {
+			this.position[node] = node;
+		}
+		this.numNodes = numNodes;
+		this.depths = null;
+	}
+
+	// for building, call sort() once all edges are in
+	void addEdgeUnordered(int from, int to) {
+		this.ensureNode(Math.max(from, to));
+		this.link(from, to);
+	}
+
+	// Kahn's algorithm over every edge, leaves the graph unordered if it has a cycle
+	void sort() {
+		int[] inDegree = Arrays.copyOf(this.numPredecessors, this.numNodes);
+		int[] queue = this.stack;
+		int head = 0, tail = 0;
+		for (int node = 0; node < this.numNodes; node++) {
+			if (inDegree[node] == 0) {
+				queue[tail++] = node;
+			}
+		}
+		while (head < tail) {
+			int node = queue[head];
+			this.position[node] = head++;
+			for (int i = 0; i < this.numSuccessors[node]; i++) {
+				int successor = this.successors[node][i];
+				if (--inDegree[successor] == 0) {
+					queue[tail++] = successor;
+				}
+			}
+		}
+		this.acyclic = tail == this.numNodes;
+		this.depths = null;
+	}
+
+	void addEdge(int from, int to) {
+		this.ensureNode(Math.max(from, to));
+		this.link(from, to);
+		if (!this.acyclic) {
+			return;
+		}
+		if (from == to) {
+			this.acyclic = false;
+			return;
+		}
+		int upperBound = this.position[from], lowerBound = this.position[to];
+		if (lowerBound > upperBound) {
+			return;
+		}
+
+		// nodes reachable from to that come before from, reaching from means the edge closed a cycle
+		this.epoch++;
+		int numForward = this.search(to, upperBound, true, this.forward, from);
+		if (numForward < 0) {
+			this.acyclic = false;
+			return;
+		}
+		// nodes that reach from and come after to
+		int numBackward = this.search(from, lowerBound, false, this.backward, -1);
+
+		// the backward nodes take the smallest of the freed positions, then the forward nodes, both keep their
+		// relative order
+		this.sortByPosition(this.backward, numBackward);
+		this.sortByPosition(this.forward, numForward);
+		int[] positions = this.stack;
+		for (int i = 0; i < numBackward; i++) {
+			positions[i] = this.position[this.backward[i]];
+		}
+		for (int i = 0; i < numForward; i++) {
+			positions[numBackward + i] = this.position[this.forward[i]];
+		}
+		Arrays.sort(positions, 0, numBackward + numForward);
+		for (int i = 0; i < numBackward; i++) {
+			this.position[this.backward[i]] = positions[i];
+		}
+		for (int i = 0; i < numForward; i++) {
+			this.position[this.forward[i]] = positions[numBackward + i];
+		}
+	}
+
+	// true if an edge from -> to would close a cycle
+	boolean wouldCreateCycle(int from, int to) {
+		if (from == to) {
+			return true;
+		}
+		if (from >= this.numNodes || to >= this.numNodes) {
+			// a node without edges can't be on a cycle
+			return false;
+		}
+		if (this.acyclic && this.position[from] < this.position[to]) {
+			return false;
+		}
+		this.epoch++;
+		int bound = this.acyclic ? this.position[from] : Integer.MAX_VALUE;
+		return this.search(to, bound, true, this.forward, from) < 0;
+	}
+
+	// depth-first search from start along the successors (or predecessors) over the nodes at most (or at least)
+	// bound in the order. stores the nodes it visits in found and returns how many, or -1 if it reaches target
+	private int search(int start, int bound, boolean forwards, int[] found, int target) {
+		int[] stack = this.stack;
+		int top = 0, numFound = 0;
+		stack[top++] = start;
+		this.mark[start] = this.epoch;
+		while (top > 0) {
+			int node = stack[--top];
+			found[numFound++] = node;
+			int[] next = forwards ? this.successors[node] : this.predecessors[node];
+			int numNext = forwards ? this.numSuccessors[node] : this.numPredecessors[node];
+			for (int i = 0; i < numNext; i++) {
+				int neighbor = next[i];
+				if (neighbor == target) {
+					return -1;
+				}
+				if (this.mark[neighbor] != this.epoch
+						&& (forwards ? this.position[neighbor] <= bound : this.position[neighbor] >= bound)) {
+					this.mark[neighbor] = this.epoch;
+					stack[top++] = neighbor;
+				}
+			}
+		}
+		return numFound;
+	}
+
+	private void sortByPosition(int[] nodes, int count) {
+		for (int i = 1; i < count; i++) {
+			int node = nodes[i];
+			int j = i - 1;
+			for (; j >= 0 && this.position[nodes[j]] > this.position[node]; j--) {
+				nodes[j + 1] = nodes[j];
+			}
+			nodes[j + 1] = node;
+		}
+	}
+
+	private void link(int from, int to) {
+		this.successors[from] = Topology.append(this.successors[from], this.numSuccessors[from]++, to);
+		this.predecessors[to] = Topology.append(this.predecessors[to], this.numPredecessors[to]++, from);
+		this.depths = null;
+	}
+
+	private static int[] append(int[] list, int size, int value) {
+		if (list == null) {
+			list = new int[4];
+		} else if (size == list.length) {
+			list = Arrays.copyOf(list, size * 2);
+		}
+		list[size] = value;
+		return list;
+	}
+
+	boolean isAcyclic() {
+		return this.acyclic;
+	}
+
+	// 0 for the bias and the inputs, every other node is one deeper than its deepest predecessor and at least 1.
+	// only defined while the graph is acyclic
+	int depthOf(int nodeID) {
+		if (nodeID >= this.numNodes) {
+			return nodeID <= this.numInputNodes ? 0 : 1;
+		}
+		if (this.depths == null) {
+			int[] order = this.order();
+			int[] depths = new int[this.numNodes];
+			for (int node : order) {
+				int depth = node <= this.numInputNodes ? 0 : 1;
+				for (int i = 0; i < this.numPredecessors[node]; i++) {
+					depth = Math.max(depth, depths[this.predecessors[node][i]] + 1);
+				}
+				depths[node] = depth;
+			}
+			this.depths = depths;
+		}
+		return this.depths[nodeID];
+	}
+
+	// node IDs by position, only a topological order while the graph is acyclic
+	int[] order() {
+		int[] order = new int[this.numNodes];
+		for (int node = 0; node < this.numNodes; node++) {
+			order[this.position[node]] = node;
+		}
+		return order;
+	}
+
+}
@@ -0,0 +1,474 @@
+package machinelearning.ne.neat.network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import machinelearning.ne.neat.genome.ActivationFunction;
+import machinelearning.ne.neat.genome.BaseTemplate;
+import machinelearning.ne.neat.genome.ConnectionGene;
+import machinelearning.ne.neat.genome.Genome;
+
+// flat phenotype of a Genome that produces the same outputs as NeuralNetwork.
+// nodes are evaluated in the order the recursive pull of NeuralNetwork would visit them, regrouped into levels of
+// independent nodes with the nodes of one activation function next to each other, so calculate() is a few loops
+// over primitive arrays with no recursion, allocation or per node branching.
+public class CompiledNetwork {
+
+	private final int numInputNodes;
+	private final int numOutputNodes;
+
+	private final boolean hasBias;
+
+	// the layout fields are package private so PopulationNetwork can pack many networks together.
+	// every node has a slot in the activation arrays: the bias and the inputs keep their node IDs, the other
+	// nodes follow grouped by level and then by activation function, -1 for nodes that do not affect the outputs
+	private final int[] slotOf;
+	final int[] outputSlots;
+
+	// level l covers the slots levelStart[l]..levelStart[l+1]-1 and the groups levelGroupStart[l]..levelGroupStart[l+1]-1
+	final int[] levelStart;
+	final int[] levelGroupStart;
+
+	// group g covers the slots groupStart[g]..groupStart[g+1]-1, which all use groupActivation[g]
+	final int[] groupStart;
+	final ActivationFunction[] groupActivation;
+
+	// incoming connections of slot firstSlot + i are sources/weights[connectionStart[i]..connectionStart[i+1]-1],
+	// the sources are slots
+	final int[] connectionStart;
+	final int[] sources;
+	final double[] weights;
+
+	// sigmoids use Neuron.fastExp instead of Math.exp
+	private final boolean fastExp;
+
+	// activation and weighted input sum of every slot
+	private final double[] activations;
+	private final double[] sums;
+
+	private final double[] outputs;
+
+	// batch scratch space, activations[slot * BATCH_BLOCK + sample] for one block of samples
+	public static final int BATCH_BLOCK = 64;
+	private double[] batchActivations;
+	private double[] batchSums;
+
+	public final long networkID;
+
+	public CompiledNetwork(Genome geno) {
+		this(geno, false);
+	}
+
+	public CompiledNetwork(Genome geno, boolean fastExp) {
+		BaseTemplate template = geno.getBaseTemplate();
+		this.numInputNodes = template.numInputNodes();
+		this.numOutputNodes = template.numOutputNodes();
+		this.hasBias = template.hasBias();
+
+		int numNodes = this.numInputNodes + this.numOutputNodes + geno.getNumHiddenNodes() + 1;
+		for (ConnectionGene cg : geno.getConnectionGenes()) {
+			numNodes = Math.max(numNodes, Math.max(cg.getInputNodeID(), cg.getOutputNodeID()) + 1);
+		}
+
+		// incoming enabled connections per node, a later gene replaces an earlier one with the same
+		// structure just like Neuron.addConnection does
+		List<Map<Integer, Double>> incoming = new ArrayList<>(numNodes);
+		for (int i = 0; i < numNodes; i++) {
+			incoming.add(null);
+		}
+		for (ConnectionGene cg : geno.getConnectionGenes()) {
+			if (cg.isEnabled()) {
+				Map<Integer, Double> prev = incoming.get(cg.getOutputNodeID());
+				if (prev == null) {
+					prev = new LinkedHashMap<>();
+					incoming.set(cg.getOutputNodeID(), prev);
+				}
+				prev.put(cg.getInputNodeID(), cg.getConnectionWeight());
+			}
+		}
+
+		int[] order = new int[numNodes];
+		int orderSize = 0;
+		// 0 = unvisited, 1 = on the stack, 2 = done
+		byte[] state = new byte[numNodes];
+		for (int i = 0; i <= this.numInputNodes; i++) {
+			state[i] = 2;
+		}
+
+		// iterative post order dfs from the outputs. an edge back onto the stack reads the activation of
+		// the previous calculate() like the recursive pull does for a cycle.
+		int[] stack = new int[numNodes];
+		int[] stackChild = new int[numNodes];
+		Map<Integer, int[]> children = new HashMap<>();
+		for (int outputID = this.numInputNodes + 1; outputID <= this.numInputNodes + this.numOutputNodes; outputID++) {
+			if (state[outputID] != 0) {
+				continue;
+			}
+			int top = 0;
+			stack[0] = outputID;
+			stackChild[0] = 0;
+			state[outputID] = 1;
+			while (top >= 0) {
+				int node = stack[top];
+				int[] prevNodes = children.get(node);
+				if (prevNodes == null) {
+					prevNodes = CompiledNetwork.keys(incoming.get(node));
+					children.put(node, prevNodes);
+				}
+				if (stackChild[top] < prevNodes.length) {
+					int prevNode = prevNodes[stackChild[top]++];
+					if (state[prevNode] == 0) {
+						state[prevNode] = 1;
+						top++;
+						stack[top] = prevNode;
+						stackChild[top] = 0;
+					}
+				} else {
+					state[node] = 2;
+					order[orderSize++] = node;
+					top--;
+				}
+			}
+		}
+
+		// nodes of the same level only depend on lower levels, so a level is evaluated as all its sums followed by
+		// the activation functions. an edge back onto the stack has to keep reading the previous activation, so its
+		// source is never put in a lower level than the node that reads it, and the sums are kept apart from the
+		// activations so a same level read still sees the old value.
+		int[] position = new int[numNodes];
+		Arrays.fill(position, -1);
+		for (int i = 0; i < orderSize; i++) {
+			position[order[i]] = i;
+		}
+		int[] level = new int[numNodes];
+		int numLevels = 0;
+		for (int i = 0; i < orderSize; i++) {
+			int node = order[i];
+			Map<Integer, Double> prev = incoming.get(node);
+			if (prev != null) {
+				for (int prevNode : prev.keySet()) {
+					if (prevNode > this.numInputNodes && position[prevNode] < i) {
+						level[node] = Math.max(level[node], level[prevNode] + 1);
+					}
+				}
+				// the back edge sources come later in order and only get their level then
+				for (int prevNode : prev.keySet()) {
+					if (prevNode > this.numInputNodes && position[prevNode] > i) {
+						level[prevNode] = Math.max(level[prevNode], level[node]);
+					}
+				}
+			}
+			numLevels = Math.max(numLevels, level[node] + 1);
+		}
+
+		// slots: bias, inputs, then the nodes by level and activation function, order decides the ties
+		Integer[] sorted = new Integer[orderSize];
+		for (int i = 0; i < orderSize; i++) {
+			sorted[i] = order[i];
+		}
+		Arrays.sort(sorted, Comparator.<Integer>comparingInt(node -> level[node])
+				.thenComparingInt(node -> geno.getActivationFunction(node).ordinal())
+				.thenComparingInt(node -> position[node]));
+
+		this.slotOf = new int[numNodes];
+		Arrays.fill(this.slotOf, -1);
+		for (int i = 0; i <= this.numInputNodes; i++) {
+			this.slotOf[i] = i;
+		}
+		int firstSlot = this.numInputNodes + 1;
+		for (int i = 0; i < orderSize; i++) {
+			this.slotOf[sorted[i]] = firstSlot + i;
+		}
+
+		this.levelStart = new int[numLevels + 1];
+		this.levelGroupStart = new int[numLevels + 1];
+		List<int[]> groups = new ArrayList<>();
+		for (int i = 0; i < orderSize; i++) {
+			int node = sorted[i];
+			ActivationFunction fn = geno.getActivationFunction(node);
+			if (i == 0 || level[sorted[i - 1]] != level[node]) {
+				for (int l = i == 0 ? 0 : level[sorted[i - 1]] + 1; l <= level[node]; l++) {
+					this.levelStart[l] = firstSlot + i;
+					this.levelGroupStart[l] = groups.size();
+				}
+				groups.add(new int[] { firstSlot + i, fn.ordinal() });
+			} else if (geno.getActivationFunction(sorted[i - 1]) != fn) {
+				groups.add(new int[] { firstSlot + i, fn.ordinal() });
+			}
+		}
+		this.levelStart[numLevels] = firstSlot + orderSize;
+		this.levelGroupStart[numLevels] = groups.size();
+		this.groupStart = new int[groups.size() + 1];
+		this.groupActivation = new ActivationFunction[groups.size()];
+		for (int g = 0; g < groups.size(); g++) {
+			this.groupStart[g] = groups.get(g)[0];
+			this.groupActivation[g] = ActivationFunction.of(groups.get(g)[1]);
+		}
+		this.groupStart[groups.size()] = firstSlot + orderSize;
+
+		int numConnections = 0;
+		for (int node : order) {
+			if (incoming.get(node) != null) {
+				numConnections += incoming.get(node).size();
+			}
+		}
+		this.connectionStart = new int[orderSize + 1];
+		this.sources = new int[numConnections];
+		this.weights = new double[numConnections];
+		int c = 0;
+		for (int i = 0; i < orderSize; i++) {
+			this.connectionStart[i] = c;
+			Map<Integer, Double> prev = incoming.get(sorted[i]);
+			if (prev != null) {
+				for (Map.Entry<Integer, Double> entry : prev.entrySet()) {
+					this.sources[c] = this.slotOf[entry.getKey()];
+					this.weights[c] = entry.getValue();
+					c++;
+				}
+			}
+		}
+		this.connectionStart[orderSize] = c;
+
+		this.outputSlots = new int[this.numOutputNodes];
+		for (int o = 0; o < this.numOutputNodes; o++) {
+			this.outputSlots[o] = this.slotOf[this.numInputNodes + 1 + o];
+		}
+
+		this.fastExp = fastExp;
+		this.activations = new double[firstSlot + orderSize];
+		this.sums = new double[firstSlot + orderSize];
+		this.outputs = new double[this.numOutputNodes];
+
+		this.networkID = geno.ID;
+	}
+
+	private static int[] keys(Map<Integer, Double> map) {
+		if (map == null) {
+			return new int[0];
+		}
+		int[] keys = new int[map.size()];
+		int i = 0;
+		for (int key : map.keySet()) {
+			keys[i++] = key;
+		}
+		return keys;
+	}
+
+	// returns an internal buffer that is overwritten by the next call
+	public double[] calculate(double[] inputs) {
+		this.calculate(inputs, this.outputs);
+		return this.outputs;
+	}
+
+	public void calculate(double[] inputs, double[] outputs) {
+		double[] activations = this.activations;
+		double[] sums = this.sums;
+
+		activations[0] = this.hasBias ? 1.0 : 0.0;
+		for (int i = 0; i < this.numInputNodes; i++) {
+			sums[i + 1] = inputs[i];
+		}
+		CompiledNetwork.activate(ActivationFunction.STEEP_SIGMOID, this.fastExp, sums, activations, 1,
+				this.numInputNodes + 1);
+
+		int firstSlot = this.numInputNodes + 1;
+		int[] connectionStart = this.connectionStart;
+		int[] sources = this.sources;
+		double[] weights = this.weights;
+		for (int l = 0; l < this.levelStart.length - 1; l++) {
+			for (int slot = this.levelStart[l], end = this.levelStart[l + 1]; slot < end; slot++) {
+				double sum = 0;
+				for (int c = connectionStart[slot - firstSlot], cEnd = connectionStart[slot - firstSlot + 1]; c < cEnd; c++) {
+					sum += activations[sources[c]] * weights[c];
+				}
+				sums[slot] = sum;
+			}
+			for (int g = this.levelGroupStart[l]; g < this.levelGroupStart[l + 1]; g++) {
+				CompiledNetwork.activate(this.groupActivation[g], this.fastExp, sums, activations, this.groupStart[g],
+						this.groupStart[g + 1]);
+			}
+		}
+
+		for (int o = 0; o < this.numOutputNodes; o++) {
+			outputs[o] = activations[this.outputSlots[o]];
+		}
+	}
+
+	// to[from..end-1] = fn(sums[from..end-1]), one tight loop per function
+	static void activate(ActivationFunction fn, boolean fastExp, double[] sums, double[] to, int from, int end) {
+		switch (fn) {
+		case SIGMOID:
+			if (fastExp) {
+				for (int i = from; i < end; i++) {
+					to[i] = Neuron.fastSigmoidFunc(sums[i]);
+				}
+			} else {
+				for (int i = from; i < end; i++) {
+					to[i] = Neuron.sigmoidFunc(sums[i]);
+				}
+			}
+			break;
+		case RELU:
+			for (int i = from; i < end; i++) {
+				to[i] = Math.max(0.0, sums[i]);
+			}
+			break;
+		case LINEAR:
+			System.arraycopy(sums, from, to, from, end - from);
+			break;
+		case STEEP_SIGMOID:
+		default:
+			if (fastExp) {
+				for (int i = from; i < end; i++) {
+					to[i] = Neuron.fastSteepSigmoidFunc(sums[i]);
+				}
+			} else {
+				for (int i = from; i < end; i++) {
+					to[i] = Neuron.steepSigmoidFunc(sums[i]);
+				}
+			}
+			break;
+		}
+	}
+
+	public void calculateBatch(double[][] inputs, double[][] outputs) {
+		int numSamples = inputs.length;
+		for (int blockStart = 0; blockStart < numSamples; blockStart += CompiledNetwork.BATCH_BLOCK) {
+			int blockSize = Math.min(CompiledNetwork.BATCH_BLOCK, numSamples - blockStart);
+			double[] lanes = this.getBatchActivations();
+			for (int i = 0; i < this.numInputNodes; i++) {
+				int row = (i + 1) * CompiledNetwork.BATCH_BLOCK;
+				for (int s = 0; s < blockSize; s++) {
+					lanes[row + s] = inputs[blockStart + s][i];
+				}
+			}
+			this.calculateBlock(blockSize);
+			for (int o = 0; o < this.numOutputNodes; o++) {
+				int row = this.outputSlots[o] * CompiledNetwork.BATCH_BLOCK;
+				for (int s = 0; s < blockSize; s++) {
+					outputs[blockStart + s][o] = lanes[row + s];
+				}
+			}
+		}
+	}
+
+	// inputs is row major numSamples x numInputNodes, outputs is row major numSamples x numOutputNodes
+	public void calculateBatch(double[] inputs, int numSamples, double[] outputs) {
+		for (int blockStart = 0; blockStart < numSamples; blockStart += CompiledNetwork.BATCH_BLOCK) {
+			int blockSize = Math.min(CompiledNetwork.BATCH_BLOCK, numSamples - blockStart);
+			double[] lanes = this.getBatchActivations();
+			for (int i = 0; i < this.numInputNodes; i++) {
+				int row = (i + 1) * CompiledNetwork.BATCH_BLOCK;
+				for (int s = 0; s < blockSize; s++) {
+					lanes[row + s] = inputs[(blockStart + s) * this.numInputNodes + i];
+				}
+			}
+			this.calculateBlock(blockSize);
+			for (int o = 0; o < this.numOutputNodes; o++) {
+				int row = this.outputSlots[o] * CompiledNetwork.BATCH_BLOCK;
+				for (int s = 0; s < blockSize; s++) {
+					outputs[(blockStart + s) * this.numOutputNodes + o] = lanes[row + s];
+				}
+			}
+		}
+	}
+
+	// evaluates one block whose raw inputs are already in the input rows. every inner loop runs over the
+	// samples of the block, so the JIT can vectorize the multiply-adds and the activation functions.
+	// feed-forward networks give the same result as calling calculate() per sample, a back edge of a cycle
+	// reads whatever its row held from the previous block.
+	private void calculateBlock(int blockSize) {
+		double[] lanes = this.batchActivations;
+		double[] sums = this.batchSums;
+		int block = CompiledNetwork.BATCH_BLOCK;
+
+		double bias = this.hasBias ? 1.0 : 0.0;
+		for (int s = 0; s < blockSize; s++) {
+			lanes[s] = bias;
+		}
+		for (int i = 1; i <= this.numInputNodes; i++) {
+			System.arraycopy(lanes, i * block, sums, i * block, blockSize);
+			CompiledNetwork.activate(ActivationFunction.STEEP_SIGMOID, this.fastExp, sums, lanes, i * block,
+					i * block + blockSize);
+		}
+
+		int firstSlot = this.numInputNodes + 1;
+		int[] connectionStart = this.connectionStart;
+		int[] sources = this.sources;
+		double[] weights = this.weights;
+		for (int l = 0; l < this.levelStart.length - 1; l++) {
+			for (int slot = this.levelStart[l], end = this.levelStart[l + 1]; slot < end; slot++) {
+				int row = slot * block;
+				for (int s = 0; s < blockSize; s++) {
+					sums[row + s] = 0;
+				}
+				for (int c = connectionStart[slot - firstSlot], cEnd = connectionStart[slot - firstSlot + 1]; c < cEnd; c++) {
+					int sourceRow = sources[c] * block;
+					double weight = weights[c];
+					for (int s = 0; s < blockSize; s++) {
+						sums[row + s] += lanes[sourceRow + s] * weight;
+					}
+				}
+			}
+			for (int g = this.levelGroupStart[l]; g < this.levelGroupStart[l + 1]; g++) {
+				// a full block is contiguous over the whole group, otherwise every row is done on its own
+				if (blockSize == block) {
+					CompiledNetwork.activate(this.groupActivation[g], this.fastExp, sums, lanes,
+							this.groupStart[g] * block, this.groupStart[g + 1] * block);
+				} else {
+					for (int slot = this.groupStart[g]; slot < this.groupStart[g + 1]; slot++) {
+						CompiledNetwork.activate(this.groupActivation[g], this.fastExp, sums, lanes, slot * block,
+								slot * block + blockSize);
+					}
+				}
+			}
+		}
+	}
+
+	private double[] getBatchActivations() {
+		if (this.batchActivations == null) {
+			this.batchActivations = new double[this.activations.length * CompiledNetwork.BATCH_BLOCK];
+			this.batchSums = new double[this.activations.length * CompiledNetwork.BATCH_BLOCK];
+		}
+		return this.batchActivations;
+	}
+
+	// activation slots: the bias, the inputs and the compiled nodes
+	int getNumSlots() {
+		return this.activations.length;
+	}
+
+	// 0 for nodes that do not affect the outputs
+	public double getActivation(int nodeID) {
+		if (nodeID >= this.slotOf.length || this.slotOf[nodeID] < 0) {
+			return 0;
+		}
+		return this.activations[this.slotOf[nodeID]];
+	}
+
+	public double getOutput(int outputIndex) {
+		return this.activations[this.outputSlots[outputIndex]];
+	}
+
+	public boolean isFastExp() {
+		return this.fastExp;
+	}
+
+	public int getNumInputNodes() {
+		return this.numInputNodes;
+	}
+
+	public int getNumOutputNodes() {
+		return this.numOutputNodes;
+	}
+
+	public int getNumConnections() {
+		return this.sources.length;
+	}
+
+}
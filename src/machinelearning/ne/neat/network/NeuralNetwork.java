@@ -97,6 +97,7 @@ public class NeuralNetwork {
 				+ geno.getBaseTemplate().numOutputNodes(); i++) {
 			// str += "\t{Node " + i + ", Type: OUTPUT}\n";
 			Neuron outputNeuron = new Neuron(this);
+			outputNeuron.setActivationFunction(geno.getActivationFunction(i));
 			neurons.put(i, outputNeuron);
 			this.outputNeurons.add(outputNeuron);
 		}
@@ -105,6 +106,7 @@ public class NeuralNetwork {
 				+ geno.getNumHiddenNodes(); i++) {
 			// str += "\t{Node " + i + ", Type: HIDDEN}\n";
 			Neuron hiddenNeuron = new Neuron(this);
+			hiddenNeuron.setActivationFunction(geno.getActivationFunction(i));
 			neurons.put(i, hiddenNeuron);
 			this.hiddenNeurons.add(hiddenNeuron);
 		}
@@ -1,22 +1,27 @@
 package machinelearning.ne.neat.network;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+import machinelearning.ne.neat.genome.ActivationFunction;
+
 public class Neuron {
 	protected double activation;
 
 	protected boolean calculated;
 
+	// in gene order, which decides the edge a cycle is broken at. CompiledNetwork relies on the same order
 	protected final Map<Neuron, Double> prevConnections;
 
 	protected final NeuralNetwork network;
 
+	protected ActivationFunction activationFunction = ActivationFunction.DEFAULT;
+
 	Neuron(NeuralNetwork network) {
 		this.network = network;
 		this.calculated = false;
 
-		this.prevConnections = new HashMap<>();
+		this.prevConnections = new LinkedHashMap<>();
 	}
 
 	public void addConnection(Neuron prevNeuron, double connectionWeight) {
@@ -54,6 +59,25 @@ public class Neuron {
 		return 1 / (1 + Math.exp(-5 * input));
 	}
 
+	// exp with a relative error below 2e-7 and no branches. x is rounded to n / ln 2 + r with |r| <= ln 2 / 2,
+	// e^r comes from a 7th degree taylor polynomial and 2^n is written straight into the exponent bits
+	public static double fastExp(double x) {
+		x = Math.max(-700.0, Math.min(700.0, x));
+		double n = Math.rint(x * 1.4426950408889634);
+		double r = x - n * 0.6931471805599453;
+		double p = 1.0 + r * (1.0 + r * (0.5 + r * (1.0 / 6 + r * (1.0 / 24 + r * (1.0 / 120 + r * (1.0 / 720
+				+ r * (1.0 / 5040)))))));
+		return p * Double.longBitsToDouble(((long) n + 1023) << 52);
+	}
+
+	public static double fastSigmoidFunc(double input) {
+		return 1 / (1 + Neuron.fastExp(-input));
+	}
+
+	public static double fastSteepSigmoidFunc(double input) {
+		return 1 / (1 + Neuron.fastExp(-5 * input));
+	}
+
 	public static double ReLU(double input) {
 		return Math.max(0.0, input);
 	}
@@ -63,7 +87,15 @@ public class Neuron {
 	}
 
 	public void activationFunc() {
-		this.activation = Neuron.steepSigmoidFunc(this.activation);
+		this.activation = this.activationFunction.apply(this.activation);
+	}
+
+	public ActivationFunction getActivationFunction() {
+		return this.activationFunction;
+	}
+
+	public void setActivationFunction(ActivationFunction activationFunction) {
+		this.activationFunction = activationFunction;
 	}
 
 	public double getActivation() {
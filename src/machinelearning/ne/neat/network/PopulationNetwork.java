@@ -0,0 +1,353 @@
+package machinelearning.ne.neat.network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import machinelearning.ne.neat.genome.ActivationFunction;
+import machinelearning.ne.neat.genome.BaseTemplate;
+import machinelearning.ne.neat.genome.Genome;
+
+// the phenotypes of a whole population packed into one structure and run in lock-step on the same inputs.
+// every genome is compiled like CompiledNetwork, then level l of every network becomes part of one shared level l
+// stored as CSR (rowStart/sources/weights over global slots) with the rows of one activation function next to each
+// other. the bias and input slots are shared, so the inputs are only squashed once for the whole population.
+// the genomes need the same number of inputs and outputs and the same bias, they give the same outputs as their
+// own CompiledNetwork.
+public class PopulationNetwork {
+
+	private final int numNetworks;
+
+	private final int numInputNodes;
+	private final int numOutputNodes;
+
+	private final boolean hasBias;
+
+	private final boolean fastExp;
+
+	// level l covers the slots levelStart[l]..levelStart[l+1]-1 and the groups levelGroupStart[l]..levelGroupStart[l+1]-1
+	private final int[] levelStart;
+	private final int[] levelGroupStart;
+
+	private final int[] groupStart;
+	private final ActivationFunction[] groupActivation;
+
+	// incoming connections of slot firstSlot + i are sources/weights[rowStart[i]..rowStart[i+1]-1]
+	private final int[] rowStart;
+	private final int[] sources;
+	private final double[] weights;
+
+	// output o of network n is in slot outputSlots[n * numOutputNodes + o]
+	private final int[] outputSlots;
+
+	private final double[] activations;
+	private final double[] sums;
+
+	// samples per block of calculateBatch, small enough that the lanes one level touches stay in cache
+	private final int batchBlock;
+
+	private BatchBuffers batchBuffers;
+
+	private final long[] networkIDs;
+
+	// about the size of a per core L2 cache
+	private static final int CACHE_BYTES = 256 * 1024;
+
+	// a lane of fewer samples than a cache line holds wastes the rest of the line and is too short to vectorize
+	private static final int MIN_BATCH_BLOCK = 8;
+
+	public PopulationNetwork(List<Genome> genos) {
+		this(genos, false);
+	}
+
+	public PopulationNetwork(List<Genome> genos, boolean fastExp) {
+		this.numNetworks = genos.size();
+		BaseTemplate template = genos.get(0).getBaseTemplate();
+		this.numInputNodes = template.numInputNodes();
+		this.numOutputNodes = template.numOutputNodes();
+		this.hasBias = template.hasBias();
+		this.fastExp = fastExp;
+
+		CompiledNetwork[] networks = new CompiledNetwork[this.numNetworks];
+		this.networkIDs = new long[this.numNetworks];
+		int numLevels = 0, numRows = 0, numConnections = 0;
+		for (int n = 0; n < this.numNetworks; n++) {
+			Genome geno = genos.get(n);
+			BaseTemplate other = geno.getBaseTemplate();
+			if (other.numInputNodes() != this.numInputNodes || other.numOutputNodes() != this.numOutputNodes
+					|| other.hasBias() != this.hasBias) {
+				throw new IllegalArgumentException("Genome " + geno.ID + " has a different template than genome "
+						+ genos.get(0).ID);
+			}
+			networks[n] = new CompiledNetwork(geno, fastExp);
+			this.networkIDs[n] = geno.ID;
+			numLevels = Math.max(numLevels, networks[n].levelStart.length - 1);
+			numRows += networks[n].getNumSlots() - this.numInputNodes - 1;
+			numConnections += networks[n].sources.length;
+		}
+
+		// global slot of every local slot, the bias and the inputs map to themselves
+		int firstSlot = this.numInputNodes + 1;
+		int[][] globalSlot = new int[this.numNetworks][];
+		for (int n = 0; n < this.numNetworks; n++) {
+			globalSlot[n] = new int[networks[n].getNumSlots()];
+			for (int i = 0; i < firstSlot; i++) {
+				globalSlot[n][i] = i;
+			}
+		}
+
+		// rows of a level sorted by activation function, then by network and local order
+		int[] rowNetwork = new int[numRows];
+		int[] rowLocalSlot = new int[numRows];
+		this.levelStart = new int[numLevels + 1];
+		this.levelGroupStart = new int[numLevels + 1];
+		List<Integer> groupStarts = new ArrayList<>();
+		List<ActivationFunction> groupActivations = new ArrayList<>();
+		int row = 0;
+		for (int l = 0; l < numLevels; l++) {
+			this.levelStart[l] = firstSlot + row;
+			this.levelGroupStart[l] = groupStarts.size();
+			List<int[]> levelRows = new ArrayList<>();
+			for (int n = 0; n < this.numNetworks; n++) {
+				CompiledNetwork network = networks[n];
+				if (l < network.levelStart.length - 1) {
+					for (int g = network.levelGroupStart[l]; g < network.levelGroupStart[l + 1]; g++) {
+						for (int slot = network.groupStart[g]; slot < network.groupStart[g + 1]; slot++) {
+							levelRows.add(new int[] { network.groupActivation[g].ordinal(), n, slot });
+						}
+					}
+				}
+			}
+			levelRows.sort(Comparator.<int[]>comparingInt(r -> r[0]).thenComparingInt(r -> r[1])
+					.thenComparingInt(r -> r[2]));
+			for (int i = 0; i < levelRows.size(); i++) {
+				int[] levelRow = levelRows.get(i);
+				if (i == 0 || levelRows.get(i - 1)[0] != levelRow[0]) {
+					groupStarts.add(firstSlot + row);
+					groupActivations.add(ActivationFunction.of(levelRow[0]));
+				}
+				rowNetwork[row] = levelRow[1];
+				rowLocalSlot[row] = levelRow[2];
+				globalSlot[levelRow[1]][levelRow[2]] = firstSlot + row;
+				row++;
+			}
+		}
+		this.levelStart[numLevels] = firstSlot + row;
+		this.levelGroupStart[numLevels] = groupStarts.size();
+		this.groupStart = new int[groupStarts.size() + 1];
+		for (int g = 0; g < groupStarts.size(); g++) {
+			this.groupStart[g] = groupStarts.get(g);
+		}
+		this.groupStart[groupStarts.size()] = firstSlot + row;
+		this.groupActivation = groupActivations.toArray(new ActivationFunction[0]);
+
+		this.rowStart = new int[numRows + 1];
+		this.sources = new int[numConnections];
+		this.weights = new double[numConnections];
+		int c = 0;
+		for (int r = 0; r < numRows; r++) {
+			this.rowStart[r] = c;
+			CompiledNetwork network = networks[rowNetwork[r]];
+			int local = rowLocalSlot[r] - firstSlot;
+			for (int lc = network.connectionStart[local]; lc < network.connectionStart[local + 1]; lc++) {
+				this.sources[c] = globalSlot[rowNetwork[r]][network.sources[lc]];
+				this.weights[c] = network.weights[lc];
+				c++;
+			}
+		}
+		this.rowStart[numRows] = c;
+
+		this.outputSlots = new int[this.numNetworks * this.numOutputNodes];
+		for (int n = 0; n < this.numNetworks; n++) {
+			for (int o = 0; o < this.numOutputNodes; o++) {
+				this.outputSlots[n * this.numOutputNodes + o] = globalSlot[n][networks[n].outputSlots[o]];
+			}
+		}
+
+		this.activations = new double[firstSlot + numRows];
+		this.sums = new double[firstSlot + numRows];
+
+		// slots one level touches: its own rows (sums and activations) and every distinct slot they read
+		int[] lastLevelRead = new int[firstSlot + numRows];
+		Arrays.fill(lastLevelRead, -1);
+		int maxLevelSlots = 1;
+		for (int l = 0; l < numLevels; l++) {
+			int levelSlots = 2 * (this.levelStart[l + 1] - this.levelStart[l]);
+			for (int r = this.levelStart[l] - firstSlot; r < this.levelStart[l + 1] - firstSlot; r++) {
+				for (int i = this.rowStart[r]; i < this.rowStart[r + 1]; i++) {
+					if (lastLevelRead[this.sources[i]] != l) {
+						lastLevelRead[this.sources[i]] = l;
+						levelSlots++;
+					}
+				}
+			}
+			maxLevelSlots = Math.max(maxLevelSlots, levelSlots);
+		}
+		this.batchBlock = Integer.highestOneBit(Math.max(PopulationNetwork.MIN_BATCH_BLOCK,
+				Math.min(CompiledNetwork.BATCH_BLOCK, PopulationNetwork.CACHE_BYTES / (Double.BYTES * maxLevelSlots))));
+	}
+
+	// outputs[n] receives the outputs of network n
+	public void calculate(double[] inputs, double[][] outputs) {
+		double[] activations = this.activations;
+		double[] sums = this.sums;
+
+		activations[0] = this.hasBias ? 1.0 : 0.0;
+		for (int i = 0; i < this.numInputNodes; i++) {
+			sums[i + 1] = inputs[i];
+		}
+		CompiledNetwork.activate(ActivationFunction.STEEP_SIGMOID, this.fastExp, sums, activations, 1,
+				this.numInputNodes + 1);
+
+		int firstSlot = this.numInputNodes + 1;
+		int[] rowStart = this.rowStart;
+		int[] sources = this.sources;
+		double[] weights = this.weights;
+		for (int l = 0; l < this.levelStart.length - 1; l++) {
+			for (int slot = this.levelStart[l], end = this.levelStart[l + 1]; slot < end; slot++) {
+				double sum = 0;
+				for (int c = rowStart[slot - firstSlot], cEnd = rowStart[slot - firstSlot + 1]; c < cEnd; c++) {
+					sum += activations[sources[c]] * weights[c];
+				}
+				sums[slot] = sum;
+			}
+			for (int g = this.levelGroupStart[l]; g < this.levelGroupStart[l + 1]; g++) {
+				CompiledNetwork.activate(this.groupActivation[g], this.fastExp, sums, activations, this.groupStart[g],
+						this.groupStart[g + 1]);
+			}
+		}
+
+		for (int n = 0; n < this.numNetworks; n++) {
+			for (int o = 0; o < this.numOutputNodes; o++) {
+				outputs[n][o] = activations[this.outputSlots[n * this.numOutputNodes + o]];
+			}
+		}
+	}
+
+	// inputs is row major numSamples x numInputNodes, outputs[n] is row major numSamples x numOutputNodes.
+	// the samples are run in blocks of at most CompiledNetwork.BATCH_BLOCK, every inner loop runs over the samples of
+	// a block
+	public void calculateBatch(double[] inputs, int numSamples, double[][] outputs) {
+		if (this.batchBuffers == null) {
+			this.batchBuffers = new BatchBuffers();
+		}
+		this.calculateBatch(inputs, numSamples, outputs, this.batchBuffers);
+	}
+
+	// same as calculateBatch(inputs, numSamples, outputs) with scratch space that can outlive this network, so a
+	// new network every generation doesn't allocate its own
+	public void calculateBatch(double[] inputs, int numSamples, double[][] outputs, BatchBuffers buffers) {
+		int block = this.batchBlock;
+		buffers.ensureCapacity(this.activations.length * block);
+		double[] lanes = buffers.activations;
+		for (int blockStart = 0; blockStart < numSamples; blockStart += block) {
+			int blockSize = Math.min(block, numSamples - blockStart);
+			for (int i = 0; i < this.numInputNodes; i++) {
+				int row = (i + 1) * block;
+				for (int s = 0; s < blockSize; s++) {
+					lanes[row + s] = inputs[(blockStart + s) * this.numInputNodes + i];
+				}
+			}
+			this.calculateBlock(blockSize, buffers);
+			for (int n = 0; n < this.numNetworks; n++) {
+				double[] networkOutputs = outputs[n];
+				for (int o = 0; o < this.numOutputNodes; o++) {
+					int row = this.outputSlots[n * this.numOutputNodes + o] * block;
+					for (int s = 0; s < blockSize; s++) {
+						networkOutputs[(blockStart + s) * this.numOutputNodes + o] = lanes[row + s];
+					}
+				}
+			}
+		}
+	}
+
+	private void calculateBlock(int blockSize, BatchBuffers buffers) {
+		double[] lanes = buffers.activations;
+		double[] sums = buffers.sums;
+		int block = this.batchBlock;
+
+		double bias = this.hasBias ? 1.0 : 0.0;
+		for (int s = 0; s < blockSize; s++) {
+			lanes[s] = bias;
+		}
+		for (int i = 1; i <= this.numInputNodes; i++) {
+			System.arraycopy(lanes, i * block, sums, i * block, blockSize);
+			CompiledNetwork.activate(ActivationFunction.STEEP_SIGMOID, this.fastExp, sums, lanes, i * block,
+					i * block + blockSize);
+		}
+
+		int firstSlot = this.numInputNodes + 1;
+		int[] rowStart = this.rowStart;
+		int[] sources = this.sources;
+		double[] weights = this.weights;
+		for (int l = 0; l < this.levelStart.length - 1; l++) {
+			for (int slot = this.levelStart[l], end = this.levelStart[l + 1]; slot < end; slot++) {
+				int row = slot * block;
+				Arrays.fill(sums, row, row + blockSize, 0);
+				for (int c = rowStart[slot - firstSlot], cEnd = rowStart[slot - firstSlot + 1]; c < cEnd; c++) {
+					int sourceRow = sources[c] * block;
+					double weight = weights[c];
+					for (int s = 0; s < blockSize; s++) {
+						sums[row + s] += lanes[sourceRow + s] * weight;
+					}
+				}
+			}
+			for (int g = this.levelGroupStart[l]; g < this.levelGroupStart[l + 1]; g++) {
+				if (blockSize == block) {
+					CompiledNetwork.activate(this.groupActivation[g], this.fastExp, sums, lanes,
+							this.groupStart[g] * block, this.groupStart[g + 1] * block);
+				} else {
+					for (int slot = this.groupStart[g]; slot < this.groupStart[g + 1]; slot++) {
+						CompiledNetwork.activate(this.groupActivation[g], this.fastExp, sums, lanes, slot * block,
+								slot * block + blockSize);
+					}
+				}
+			}
+		}
+	}
+
+	public double getOutput(int network, int outputIndex) {
+		return this.activations[this.outputSlots[network * this.numOutputNodes + outputIndex]];
+	}
+
+	public long getNetworkID(int network) {
+		return this.networkIDs[network];
+	}
+
+	public int getNumNetworks() {
+		return this.numNetworks;
+	}
+
+	public int getNumInputNodes() {
+		return this.numInputNodes;
+	}
+
+	public int getNumOutputNodes() {
+		return this.numOutputNodes;
+	}
+
+	public int getNumConnections() {
+		return this.sources.length;
+	}
+
+	public int getBatchBlock() {
+		return this.batchBlock;
+	}
+
+	// scratch space of calculateBatch, grows to the largest network it was used for
+	public static class BatchBuffers {
+
+		private double[] activations = new double[0];
+		private double[] sums = new double[0];
+
+		void ensureCapacity(int length) {
+			if (this.activations.length < length) {
+				this.activations = new double[length];
+				this.sums = new double[length];
+			}
+		}
+
+	}
+
+}
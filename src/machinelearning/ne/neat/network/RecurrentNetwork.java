@@ -0,0 +1,253 @@
+package machinelearning.ne.neat.network;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import machinelearning.ne.neat.genome.ActivationFunction;
+import machinelearning.ne.neat.genome.BaseTemplate;
+import machinelearning.ne.neat.genome.ConnectionGene;
+import machinelearning.ne.neat.genome.Genome;
+
+// stateful phenotype for genomes that may contain cycles (NEATStats.recurrentAllowed).
+// every step() sets the inputs and then runs numRelaxationSteps synchronous updates in which every non input node,
+// in ascending node ID order, reads the activations of the previous update. a signal crosses one connection per
+// update and the activations carry over to the next step() until reset(), which is what gives the network memory.
+// feed-forward networks relaxed for at least their depth give the same outputs as CompiledNetwork.
+// batchSize independent copies (lanes) of the state are kept so many episodes can be stepped at once.
+// stepping does not allocate.
+public class RecurrentNetwork {
+
+	private final int numInputNodes;
+	private final int numOutputNodes;
+
+	private final boolean hasBias;
+
+	private final int numNodes;
+
+	// ids of the non input nodes
+	private final int[] nodes;
+
+	// incoming connections of nodes[i] are sources/weights[connectionStart[i]..connectionStart[i+1]-1]
+	private final int[] connectionStart;
+	private final int[] sources;
+	private final double[] weights;
+
+	private final ActivationFunction[] activationFunctions;
+
+	// sigmoids use Neuron.fastExp instead of Math.exp
+	private final boolean fastExp;
+
+	private final int batchSize;
+
+	private int numRelaxationSteps;
+
+	// activations[nodeID * batchSize + lane], the previous update is read from activations and the next is written
+	// to nextActivations before they are swapped
+	private double[] activations;
+	private double[] nextActivations;
+
+	private final double[] outputs;
+
+	public final long networkID;
+
+	public RecurrentNetwork(Genome geno) {
+		this(geno, 1, 1);
+	}
+
+	public RecurrentNetwork(Genome geno, int batchSize, int numRelaxationSteps) {
+		this(geno, batchSize, numRelaxationSteps, false);
+	}
+
+	public RecurrentNetwork(Genome geno, int batchSize, int numRelaxationSteps, boolean fastExp) {
+		BaseTemplate template = geno.getBaseTemplate();
+		this.numInputNodes = template.numInputNodes();
+		this.numOutputNodes = template.numOutputNodes();
+		this.hasBias = template.hasBias();
+
+		int numNodes = this.numInputNodes + this.numOutputNodes + geno.getNumHiddenNodes() + 1;
+		for (ConnectionGene cg : geno.getConnectionGenes()) {
+			numNodes = Math.max(numNodes, Math.max(cg.getInputNodeID(), cg.getOutputNodeID()) + 1);
+		}
+		this.numNodes = numNodes;
+
+		// a later gene replaces an earlier one with the same structure, like in CompiledNetwork
+		List<Map<Integer, Double>> incoming = new ArrayList<>(numNodes);
+		for (int i = 0; i < numNodes; i++) {
+			incoming.add(new LinkedHashMap<>());
+		}
+		int numConnections = 0;
+		for (ConnectionGene cg : geno.getConnectionGenes()) {
+			if (cg.isEnabled() && cg.getOutputNodeID() > this.numInputNodes) {
+				incoming.get(cg.getOutputNodeID()).put(cg.getInputNodeID(), cg.getConnectionWeight());
+			}
+		}
+		for (Map<Integer, Double> prev : incoming) {
+			numConnections += prev.size();
+		}
+
+		this.nodes = new int[numNodes - this.numInputNodes - 1];
+		this.connectionStart = new int[this.nodes.length + 1];
+		this.sources = new int[numConnections];
+		this.weights = new double[numConnections];
+		this.activationFunctions = new ActivationFunction[this.nodes.length];
+		int c = 0;
+		for (int i = 0; i < this.nodes.length; i++) {
+			this.nodes[i] = this.numInputNodes + 1 + i;
+			this.activationFunctions[i] = geno.getActivationFunction(this.nodes[i]);
+			this.connectionStart[i] = c;
+			for (Map.Entry<Integer, Double> entry : incoming.get(this.nodes[i]).entrySet()) {
+				this.sources[c] = entry.getKey();
+				this.weights[c] = entry.getValue();
+				c++;
+			}
+		}
+		this.connectionStart[this.nodes.length] = c;
+
+		this.fastExp = fastExp;
+		this.batchSize = batchSize;
+		this.numRelaxationSteps = numRelaxationSteps;
+		this.activations = new double[numNodes * batchSize];
+		this.nextActivations = new double[numNodes * batchSize];
+		this.outputs = new double[this.numOutputNodes];
+
+		this.networkID = geno.ID;
+
+		this.reset();
+	}
+
+	// forgets the state of every lane
+	public void reset() {
+		for (int lane = 0; lane < this.batchSize; lane++) {
+			this.reset(lane);
+		}
+	}
+
+	public void reset(int lane) {
+		this.activations[lane] = this.hasBias ? 1.0 : 0.0;
+		for (int node = 1; node < this.numNodes; node++) {
+			this.activations[node * this.batchSize + lane] = 0;
+		}
+		for (int node = 0; node < this.numNodes; node++) {
+			this.nextActivations[node * this.batchSize + lane] = this.activations[node * this.batchSize + lane];
+		}
+	}
+
+	// steps lane 0 only. returns an internal buffer that is overwritten by the next call
+	public double[] step(double[] inputs) {
+		this.step(inputs, this.outputs);
+		return this.outputs;
+	}
+
+	public void step(double[] inputs, double[] outputs) {
+		this.setInput(0, inputs, 0);
+		this.relax(1);
+		this.getOutputs(0, outputs, 0);
+	}
+
+	// inputs is row major numLanes x numInputNodes, outputs is row major numLanes x numOutputNodes.
+	// steps lanes 0..numLanes-1, the other lanes keep their state
+	public void stepBatch(double[] inputs, int numLanes, double[] outputs) {
+		for (int lane = 0; lane < numLanes; lane++) {
+			this.setInput(lane, inputs, lane * this.numInputNodes);
+		}
+		this.relax(numLanes);
+		for (int lane = 0; lane < numLanes; lane++) {
+			this.getOutputs(lane, outputs, lane * this.numOutputNodes);
+		}
+	}
+
+	public void stepBatch(double[][] inputs, double[][] outputs) {
+		for (int lane = 0; lane < inputs.length; lane++) {
+			this.setInput(lane, inputs[lane], 0);
+		}
+		this.relax(inputs.length);
+		for (int lane = 0; lane < inputs.length; lane++) {
+			this.getOutputs(lane, outputs[lane], 0);
+		}
+	}
+
+	private void setInput(int lane, double[] inputs, int offset) {
+		for (int i = 0; i < this.numInputNodes; i++) {
+			double activation = this.fastExp ? Neuron.fastSteepSigmoidFunc(inputs[offset + i])
+					: Neuron.steepSigmoidFunc(inputs[offset + i]);
+			this.activations[(i + 1) * this.batchSize + lane] = activation;
+			this.nextActivations[(i + 1) * this.batchSize + lane] = activation;
+		}
+	}
+
+	private void getOutputs(int lane, double[] outputs, int offset) {
+		for (int o = 0; o < this.numOutputNodes; o++) {
+			outputs[offset + o] = this.activations[(this.numInputNodes + 1 + o) * this.batchSize + lane];
+		}
+	}
+
+	// every inner loop runs over the lanes, so the JIT can vectorize the multiply-adds
+	private void relax(int numLanes) {
+		int[] nodes = this.nodes;
+		int[] connectionStart = this.connectionStart;
+		int[] sources = this.sources;
+		double[] weights = this.weights;
+		int batch = this.batchSize;
+
+		for (int step = 0; step < this.numRelaxationSteps; step++) {
+			double[] current = this.activations;
+			double[] next = this.nextActivations;
+			for (int i = 0; i < nodes.length; i++) {
+				int row = nodes[i] * batch;
+				for (int s = 0; s < numLanes; s++) {
+					next[row + s] = 0;
+				}
+				for (int c = connectionStart[i], end = connectionStart[i + 1]; c < end; c++) {
+					int sourceRow = sources[c] * batch;
+					double weight = weights[c];
+					for (int s = 0; s < numLanes; s++) {
+						next[row + s] += current[sourceRow + s] * weight;
+					}
+				}
+				CompiledNetwork.activate(this.activationFunctions[i], this.fastExp, next, next, row, row + numLanes);
+			}
+			this.activations = next;
+			this.nextActivations = current;
+		}
+		// both buffers hold the same state between steps, otherwise a lane that is not stepped next time would be
+		// swapped back to an older state
+		for (int node : nodes) {
+			System.arraycopy(this.activations, node * batch, this.nextActivations, node * batch, numLanes);
+		}
+	}
+
+	public double getActivation(int lane, int nodeID) {
+		return this.activations[nodeID * this.batchSize + lane];
+	}
+
+	public double getOutput(int lane, int outputIndex) {
+		return this.activations[(this.numInputNodes + 1 + outputIndex) * this.batchSize + lane];
+	}
+
+	public int getNumRelaxationSteps() {
+		return this.numRelaxationSteps;
+	}
+
+	public void setNumRelaxationSteps(int numRelaxationSteps) {
+		this.numRelaxationSteps = numRelaxationSteps;
+	}
+
+	public int getBatchSize() {
+		return this.batchSize;
+	}
+
+	public int getNumInputNodes() {
+		return this.numInputNodes;
+	}
+
+	public int getNumOutputNodes() {
+		return this.numOutputNodes;
+	}
+
+	public int getNumConnections() {
+		return this.sources.length;
+	}
+
+}